@@ -5,6 +5,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import spring.learn.jpa_hibernate.job.CourseCacheWarmUp;
 import spring.learn.jpa_hibernate.repository.basics.CourseJpaRepository;
 import spring.learn.jpa_hibernate.repository.basics.PersonJdbcDao;
 import spring.learn.jpa_hibernate.repository.basics.PersonJpaRepository;
@@ -12,6 +14,8 @@ import spring.learn.jpa_hibernate.repository.inheritence.EmployeeRepository;
 import spring.learn.jpa_hibernate.repository.relationship.StudentRepository;
 
 @SpringBootApplication
+@EnableScheduling
+// -> for @Scheduled jobs, e.g. CourseArchivalJob
 @Slf4j
 public class JpaHibernateApplication implements CommandLineRunner {
 
@@ -30,6 +34,9 @@ public class JpaHibernateApplication implements CommandLineRunner {
     @Autowired
     EmployeeRepository employeeRepository;
 
+    @Autowired
+    CourseCacheWarmUp courseCacheWarmUp;
+
     public static void main(String[] args) {
         SpringApplication.run(JpaHibernateApplication.class, args);
     }
@@ -37,6 +44,9 @@ public class JpaHibernateApplication implements CommandLineRunner {
     @Override
     public void run(String... args) throws Exception {
         log.info("----------------------------------------------------------------------------------------------------------");
+        // fills the Course cache region before the application reports ready -> off unless course.cache-warm-up.enabled=true
+        courseCacheWarmUp.warmUp();
+
         // log.info("All users -> {}", personJdbcDao.findAll());
         // log.info("User 10_001 -> {}", personJdbcDao.findById(10_001));
         // log.info("User 10_001 -> {}", personJdbcDao.findByIdWithPersonRowMapper(10_001));
@@ -0,0 +1,107 @@
+package spring.learn.jpa_hibernate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import spring.learn.jpa_hibernate.repository.cache.CacheRegionMonitor;
+import spring.learn.jpa_hibernate.repository.cache.RegionStats;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 2nd level cache regions over http -> see CacheRegionMonitor
+ * <pre>
+ *     GET    /management/caches                         -> every region. `?bytes=true` estimates heap bytes as well (slow)
+ *     GET    /management/caches/{region}                -> one region
+ *     DELETE /management/caches                         -> evict every region
+ *     DELETE /management/caches/{region}                -> evict one region
+ *     PUT    /management/caches/{region}?maxEntriesOnHeap=5000&maxEntriesOnDisk=100000&timeToLive=PT10M
+ * </pre>
+ * Region names are the entity / collection names -> `spring.learn.jpa_hibernate.entity.basics.Course`
+ * <p>
+ * NOTE: there is no security on the classpath -> anyone who can reach the port can call these.
+ * So DELETE and PUT answer `403` unless `cache.management.write-enabled=true` -> only turn it on behind a firewall,
+ * or after adding spring-boot-starter-security. The GETs only read counters.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/management/caches")
+public class CacheManagementController {
+
+    @Autowired
+    CacheRegionMonitor cacheRegionMonitor;
+
+    // off by default -> evicting or shrinking a region in production is an outage of its own
+    @Value("${cache.management.write-enabled:false}")
+    boolean writeEnabled;
+
+    @GetMapping
+    public List<RegionStats> all(@RequestParam(defaultValue = "false") boolean bytes) {
+        return cacheRegionMonitor.stats(bytes);
+    }
+
+    @GetMapping("/{region}")
+    public RegionStats one(@PathVariable String region, @RequestParam(defaultValue = "false") boolean bytes) {
+        return cacheRegionMonitor.stats(region, bytes);
+    }
+
+    @DeleteMapping
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void evictAll() {
+        checkWriteEnabled();
+        log.info("evicting every cache region");
+        cacheRegionMonitor.evictAll();
+    }
+
+    @DeleteMapping("/{region}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void evict(@PathVariable String region) {
+        checkWriteEnabled();
+        log.info("evicting cache region {}", region);
+        cacheRegionMonitor.evict(region);
+    }
+
+    @PutMapping("/{region}")
+    public RegionStats resize(
+            @PathVariable String region,
+            @RequestParam(required = false) Long maxEntriesOnHeap,
+            @RequestParam(required = false) Long maxEntriesOnDisk,
+            @RequestParam(required = false) Duration timeToLive
+    ) {
+        checkWriteEnabled();
+        log.info("resizing cache region {} -> heap={}, disk={}, ttl={}", region, maxEntriesOnHeap, maxEntriesOnDisk, timeToLive);
+        return cacheRegionMonitor.resize(region, maxEntriesOnHeap, maxEntriesOnDisk, timeToLive);
+    }
+
+    private void checkWriteEnabled() {
+        if (!writeEnabled) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "cache.management.write-enabled is false");
+        }
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public Map<String, String> notFound(NoSuchElementException e) {
+        return Map.of("error", e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> badRequest(IllegalArgumentException e) {
+        return Map.of("error", e.getMessage());
+    }
+}
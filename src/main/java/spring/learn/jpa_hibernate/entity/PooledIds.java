@@ -0,0 +1,57 @@
+package spring.learn.jpa_hibernate.entity;
+
+import org.hibernate.id.enhanced.TableGenerator;
+
+/**
+ * Opt-in pooled id generation for entities which are persisted in bulk.
+ * <p>
+ * `GenerationType.IDENTITY` -> id is only known AFTER the insert. So Hibernate has to run each insert immediately,
+ * and `hibernate.jdbc_batch_size` is silently ignored for that entity.
+ * <p>
+ * MySQL has no sequences. So instead, a row in `id_generators` table acts as a sequence (see id_generators.sql):
+ * <p> 1. Hibernate reserves a block of {@link #ALLOCATION_SIZE} ids with a single update on that table
+ * <p> 2. next {@link #ALLOCATION_SIZE} persists are given ids from memory -> no round trip
+ * <p> 3. since ids are known before the insert, inserts are queued and sent as jdbc batches
+ * <p>
+ * To opt in, an entity declares its own generator (one row per table) and refers to it:
+ * <pre>
+ * &#64;Id
+ * &#64;GeneratedValue(generator = "review_ids")
+ * &#64;GenericGenerator(
+ *         name = "review_ids",
+ *         strategy = PooledIds.STRATEGY,
+ *         parameters = {
+ *                 &#64;Parameter(name = TableGenerator.TABLE_PARAM, value = PooledIds.TABLE),
+ *                 &#64;Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "reviews"),
+ *                 &#64;Parameter(name = TableGenerator.INCREMENT_PARAM, value = PooledIds.ALLOCATION_SIZE),
+ *                 &#64;Parameter(name = TableGenerator.OPT_PARAM, value = PooledIds.OPTIMIZER)
+ *         }
+ * )
+ * </pre>
+ * parameter names are constants of {@link TableGenerator}
+ * <p>
+ * NOTE: ids are no longer contiguous -> a restart throws away the rest of the reserved block.
+ * <p>
+ * NOTE: `auto_increment` is removed from these tables (see id_generators.sql) -> it would continue from max(id),
+ * which can be an id inside a block already reserved by Hibernate. A plain SQL insert without an id now fails
+ * instead of colliding later. Insert through JPA (or a StatelessSession), or take the id from `id_generators` as well.
+ * <p>
+ * A new entity opting in -> add its table to id_generators.sql, both the seed row and the `alter table`.
+ * <p>
+ * <a href="https://vladmihalcea.com/hibernate-identity-sequence-and-table-sequence-generator/">https://vladmihalcea.com/hibernate-identity-sequence-and-table-sequence-generator/</a>
+ */
+public final class PooledIds {
+
+    public static final String STRATEGY = "org.hibernate.id.enhanced.TableGenerator";
+
+    public static final String TABLE = "id_generators";
+
+    public static final String ALLOCATION_SIZE = "50";
+
+    // pooled-lo -> the value stored in the table is the first id of the next free block
+    // so id_generators.sql can seed it with max(id) + 1 of the existing rows
+    public static final String OPTIMIZER = "pooled-lo";
+
+    private PooledIds() {
+    }
+}
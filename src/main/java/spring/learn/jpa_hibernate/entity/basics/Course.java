@@ -5,6 +5,9 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 import org.hibernate.annotations.*;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
+import spring.learn.jpa_hibernate.entity.PooledIds;
 
 import javax.persistence.Entity;
 import javax.persistence.NamedQueries;
@@ -22,7 +25,8 @@ import java.time.LocalDateTime;
 @Cacheable
 // enables 2nd level cache
 
-@SQLDelete(sql = "update course set is_deleted=true where id=?", check = ResultCheckStyle.COUNT)
+@SQLDelete(sql = "update course set is_deleted=true, version=version+1 where id=? and version=?", check = ResultCheckStyle.COUNT)
+// Course is @Version-ed -> Hibernate binds the version as the 2nd parameter of the delete as well
 // Hibernate only -> not JPA
 // I can execute specific query when deleting or other such events instead of actually doing said event.
 // This is called Soft Delete -> https://thorben-janssen.com/implement-soft-delete-hibernate/
@@ -36,7 +40,9 @@ import java.time.LocalDateTime;
 @NamedQueries(
         value = {
                 @NamedQuery(name = "Course.deleteById", query = "delete from Course where id=:id"),
-                @NamedQuery(name = "Course.findById", query = "select c from Course c where c.id=:id")
+                // opt-in query cache -> see QueryCaches
+                @NamedQuery(name = "Course.findById", query = "select c from Course c where c.id=:id",
+                        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
         }
 )
 // you cannot simply give multiple @NamedQuery one after the other
@@ -46,7 +52,18 @@ import java.time.LocalDateTime;
 public class Course {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "course_ids")
+    @GenericGenerator(
+            name = "course_ids",
+            strategy = PooledIds.STRATEGY,
+            parameters = {
+                    @Parameter(name = TableGenerator.TABLE_PARAM, value = PooledIds.TABLE),
+                    @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "course"),
+                    @Parameter(name = TableGenerator.INCREMENT_PARAM, value = PooledIds.ALLOCATION_SIZE),
+                    @Parameter(name = TableGenerator.OPT_PARAM, value = PooledIds.OPTIMIZER)
+            }
+    )
+    // NOT `GenerationType.IDENTITY` -> that disables jdbc batching for inserts. see PooledIds
     private Long id;
 
     private String name;
@@ -60,6 +77,13 @@ public class Course {
     @Column(name = "is_deleted")
     private boolean isDeleted;
 
+    // Optimistic locking -> every update runs as "update course set ..., version=version+1 where id=? and version=?"
+    // If someone else updated the row in between, no row matches -> OptimisticLockException instead of silently
+    // overwriting their change. No row lock is held while the entity is being edited.
+    // see OptimisticUpdater for retrying on such a conflict
+    @Version
+    private Long version;
+
     // I don't want to create a separate table for CourseCode and link that here
     // But rather I want fields in CourseCode to be present in the same `course` which this entity is mapped to
     // However I want to maintain CourseCode in a separate class rather than add all its fields here
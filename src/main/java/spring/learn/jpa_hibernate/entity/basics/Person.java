@@ -3,6 +3,7 @@ package spring.learn.jpa_hibernate.entity.basics;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.QueryHints;
 
 import javax.persistence.*;
 import java.util.Date;
@@ -16,11 +17,23 @@ import java.util.Date;
 @Setter
 @Entity(name = "Person")
 @Table(name = "person")
-@NamedQuery(name = "find_all", query = "select p from Person p")
+@Cacheable
+// enables 2nd level cache -> the query cache of `find_all` only holds ids, the persons themselves come from here
+@NamedQuery(name = "find_all", query = "select p from Person p", hints = {
+        // opt-in query cache -> see QueryCaches
+        @QueryHint(name = QueryHints.CACHEABLE, value = "true"),
+        // own region -> PersonJdbcDao can throw away these results without touching other cached queries
+        @QueryHint(name = QueryHints.CACHE_REGION, value = Person.QUERY_CACHE_REGION)
+})
 // here `Person` refers to `name` given in @Entity annotation -> @Entity(name = "Person")
 // note that JPQL is slightly different from MySQL
+@NamedQuery(name = "find_page", query = "select p from Person p where p.id > :lastSeenId order by p.id")
+// @NamedQuery is repeatable (since JPA 2.2) -> no need for @NamedQueries like in Course
+// NOTE: no JPQL bulk delete here -> it would evict the whole Person region, see PersonJpaRepository#deleteAllByIds
 public class Person {
 
+    public static final String QUERY_CACHE_REGION = "query.Person";
+
     // For data conversions between MySQL and Java:
     // https://dev.mysql.com/doc/connector-j/5.1/en/connector-j-reference-type-conversions.html
 
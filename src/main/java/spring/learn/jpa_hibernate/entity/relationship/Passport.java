@@ -4,6 +4,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 
@@ -14,6 +16,10 @@ import javax.persistence.*;
 // -------------------------------------------------------------------------------
 // can replace `@Getter`, `@Setter`, `@ToString` with `@Data`
 // BUT make sure to annotate `id` field as `@Setter(value = AccessLevel.NONE)`
+@Cacheable
+// enables 2nd level cache
+@NaturalIdCache
+// caches number -> id. see StudentRepository#findStudentByPassportNumber
 @Entity
 @Table(name = "passports")
 public class Passport {
@@ -23,6 +29,9 @@ public class Passport {
     // always specify what type of strategy is used
     private Integer id;
 
+    // natural id -> see Subject#name
+    // mutable -> a passport can be renewed with a new number. Hibernate then updates the cached number -> id too
+    @NaturalId(mutable = true)
     @Column(nullable = false, unique = true)
     private String number;
 
@@ -1,19 +1,37 @@
 package spring.learn.jpa_hibernate.entity.relationship;
 
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
+import spring.learn.jpa_hibernate.entity.PooledIds;
 
 import javax.persistence.*;
 
 @NoArgsConstructor
 @Data
 // ---------------------------
+@Cacheable
+// enables 2nd level cache -> cached Subject#reviews only hold review ids
 @Entity
 @Table(name = "reviews")
 public class Review {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    @Column(nullable = false, updatable = false, insertable = false, unique = true)
+    @GeneratedValue(generator = "review_ids")
+    @GenericGenerator(
+            name = "review_ids",
+            strategy = PooledIds.STRATEGY,
+            parameters = {
+                    @Parameter(name = TableGenerator.TABLE_PARAM, value = PooledIds.TABLE),
+                    @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "reviews"),
+                    @Parameter(name = TableGenerator.INCREMENT_PARAM, value = PooledIds.ALLOCATION_SIZE),
+                    @Parameter(name = TableGenerator.OPT_PARAM, value = PooledIds.OPTIMIZER)
+            }
+    )
+    // NOT `GenerationType.IDENTITY` -> that disables jdbc batching for inserts. see PooledIds
+    // id is generated by Hibernate now, not by auto_increment -> so it must be insertable
+    @Column(nullable = false, updatable = false, unique = true)
     @Setter(AccessLevel.NONE)
     private Integer id;
 
@@ -4,6 +4,10 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -14,6 +18,10 @@ import java.util.List;
 @Setter
 @ToString
 // ---------------------------
+@Cacheable
+// enables 2nd level cache -> see Subject#students for the collections
+@NaturalIdCache
+// caches passport id -> student id. see StudentRepository#findStudentByPassportNumber
 @Entity
 @Table(name = "students")
 public class Student {
@@ -39,6 +47,9 @@ public class Student {
     // `Student` now OWNS `Passport`
     // So, here it is annotated with @OneToOne -> but this is not for the case of `Passport`
 
+    // natural id over an association -> `passport_id` is unique and not null, so it identifies the student as well
+    // only the id of the passport is part of the natural id. see StudentRepository#findStudentByPassportNumber
+    @NaturalId
     @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(nullable = false, unique = true)
     @ToString.Exclude
@@ -55,6 +66,9 @@ public class Student {
     // I'm going to make Student entity as owning side
     // So Subjects will have a `mappedBy` attribute pointing to `subjects` attribute in `Student`
     @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    // collection cache -> see Subject#reviews. This is the owning side -> its entry is evicted whenever a row of
+    // `subject_student` is written for this student
     // because @ManyToMany creates a new table -> I can name the created table as follows
     // -> if I don't name, then JPA will create one on its own
     @JoinTable(
@@ -5,6 +5,15 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.id.enhanced.TableGenerator;
+import spring.learn.jpa_hibernate.entity.PooledIds;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -17,26 +26,58 @@ import java.util.List;
 // ---------------------------
 @Entity
 @Table(name = "subjects")
+@Cacheable
+// enables 2nd level cache -> needed by the cached `Subject.getAllSubjects` query, see QueryCaches
+@NaturalIdCache
+// caches name -> id as well. see SubjectRepository#findSubjectByName
 @NamedQueries(
         value = {
-                @NamedQuery(name = "Subject.getAllSubjects", query = "select s from Subject s"),
-                @NamedQuery(name = "Subject.getAllSubjects.joinFetch", query = "select s from Subject s join fetch s.students")
+                @NamedQuery(name = "Subject.getAllSubjects", query = "select s from Subject s",
+                        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+                @NamedQuery(name = "Subject.getAllSubjects.joinFetch", query = "select s from Subject s join fetch s.students"),
+                // constructor expression -> needs the fully qualified class name
+                // scalar results -> cached as they are, no 2nd level cache needed
+                @NamedQuery(name = "Subject.getAllSubjects.summary", query = "select new spring.learn.jpa_hibernate.projection.SubjectSummary(s.id, s.name) from Subject s",
+                        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))
         }
 )
 public class Subject {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "subject_ids")
+    @GenericGenerator(
+            name = "subject_ids",
+            strategy = PooledIds.STRATEGY,
+            parameters = {
+                    @Parameter(name = TableGenerator.TABLE_PARAM, value = PooledIds.TABLE),
+                    @Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "subjects"),
+                    @Parameter(name = TableGenerator.INCREMENT_PARAM, value = PooledIds.ALLOCATION_SIZE),
+                    @Parameter(name = TableGenerator.OPT_PARAM, value = PooledIds.OPTIMIZER)
+            }
+    )
+    // NOT `GenerationType.IDENTITY` -> that disables jdbc batching for inserts. see PooledIds
     private Integer id;
 
+    // natural id -> a unique business key, next to the surrogate `id`. Hibernate only, not JPA
+    // immutable (the default) -> Hibernate fails the flush if it is changed, so a cached name -> id is never stale
+    @NaturalId
     @Column(nullable = false, length = 100, unique = true)
     private String name;
 
+    // optimistic locking -> see Course#version
+    @Version
+    private Integer version;
+
     /**
      * see Review#course
      */
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "subject")
     // by default fetch type is LAZY
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    // collection cache -> Hibernate only, no JPA equivalent. region = `...Subject.reviews`
+    // only the IDS of the reviews are cached -> Review must be @Cacheable too, otherwise they are loaded 1 by 1
+    // the entry of a subject is evicted when this list changes, or (auto_evict_collection_cache) when a review
+    // changes its `subject` without this list being touched
     @ToString.Exclude
     private List<Review> reviews = new ArrayList<>();
     // There 2 annotations: @OneToMany and @ManyToOne
@@ -44,6 +85,8 @@ public class Subject {
     // Review is the owning part -> hence its attribute `subject` is set to `mapped by`
 
     @ManyToMany(fetch = FetchType.LAZY, mappedBy = "subjects")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    // see reviews above -> Student is @Cacheable as well
     @ToString.Exclude
     private List<Student> students = new ArrayList<>();
 
@@ -0,0 +1,13 @@
+package spring.learn.jpa_hibernate.job;
+
+import java.time.Duration;
+
+/**
+ * What a single {@link CourseArchivalJob} run did.
+ * <p>
+ * Lock time -> how long a batch transaction held its row locks (from `select ... for update` to commit)
+ */
+public record ArchivalStats(long rowsMoved, int batches, Duration totalLockTime, Duration maxLockTime, Duration elapsed) {
+
+    public static final ArchivalStats NONE = new ArchivalStats(0, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+}
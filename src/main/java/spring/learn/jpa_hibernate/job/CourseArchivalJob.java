@@ -0,0 +1,155 @@
+package spring.learn.jpa_hibernate.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves soft deleted courses out of the `course` table into `course_archive` (see course.sql).
+ * <p>
+ * Because of @SQLDelete on Course, a deleted course is only marked `is_deleted=true` and stays in the table forever.
+ * Every query then has to skip an ever-growing number of dead rows with `is_deleted=false`.
+ * <p>
+ * Each run:
+ * <p> 1. picks rows deleted longer than `course.archival.retention` ago -> `last_updated` is set by MySQL on the
+ * soft delete update (`on update now()`)
+ * <p> 2. moves them in batches of `course.archival.batch-size` -> each batch is its own SHORT transaction:
+ * `select ... for update`, `insert into course_archive select ...`, `delete` -> row locks are only held for 1 batch
+ * <p> and only on the rows being moved: the select seeks on `idx_course_deleted_last_updated_id` (see course.sql), and
+ * READ_COMMITTED takes no gap locks -> updates of live courses are never blocked by the job
+ * <p> 3. sleeps `course.archival.pause` between batches -> leaves room for the normal traffic
+ * <p>
+ * Only enabled with `course.archival.enabled=true`
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "course.archival.enabled", havingValue = "true")
+public class CourseArchivalJob {
+
+    @Autowired
+    NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @Value("${course.archival.retention:P30D}")
+    Duration retention;
+
+    @Value("${course.archival.batch-size:500}")
+    int batchSize;
+
+    @Value("${course.archival.pause:PT0.2S}")
+    Duration pause;
+
+    @Value("${course.archival.max-batches-per-run:100}")
+    int maxBatchesPerRun;
+
+    private TransactionTemplate batchTransaction;
+
+    private volatile ArchivalStats lastRun = ArchivalStats.NONE;
+
+    @PostConstruct
+    void init() {
+        batchTransaction = new TransactionTemplate(transactionManager);
+        // never join a caller's transaction -> every batch commits (and releases its locks) on its own
+        batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // REPEATABLE_READ (MySQL default) -> `for update` takes next-key locks on every index record it scans,
+        // gaps included. READ_COMMITTED -> only the matching rows stay locked
+        batchTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    @Scheduled(
+            initialDelayString = "${course.archival.initial-delay:PT1H}",
+            fixedDelayString = "${course.archival.fixed-delay:PT1H}"
+    )
+    public ArchivalStats archive() {
+
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(retention));
+        long start = System.nanoTime();
+
+        long rowsMoved = 0;
+        int batches = 0;
+        Duration totalLockTime = Duration.ZERO;
+        Duration maxLockTime = Duration.ZERO;
+
+        while (batches < maxBatchesPerRun) {
+
+            long batchStart = System.nanoTime();
+            Integer moved = batchTransaction.execute(status -> archiveBatch(cutoff));
+            Duration lockTime = Duration.ofNanos(System.nanoTime() - batchStart);
+
+            if (moved == null || moved == 0) break;
+
+            rowsMoved += moved;
+            batches++;
+            totalLockTime = totalLockTime.plus(lockTime);
+            if (lockTime.compareTo(maxLockTime) > 0) maxLockTime = lockTime;
+
+            // a partly filled batch -> nothing left to archive
+            if (moved < batchSize) break;
+            sleep();
+        }
+
+        lastRun = new ArchivalStats(rowsMoved, batches, totalLockTime, maxLockTime, Duration.ofNanos(System.nanoTime() - start));
+        log.info("course archival -> {}", lastRun);
+        return lastRun;
+    }
+
+    public ArchivalStats getLastRun() {
+        return lastRun;
+    }
+
+    private int archiveBatch(Timestamp cutoff) {
+
+        // `for update` -> nobody can un-delete (or change) these rows while they are being moved
+        // ordered like idx_course_deleted_last_updated_id -> MySQL stops reading after `limit` rows, no sort
+        List<Long> ids = jdbcTemplate.queryForList(
+                "select id from course where is_deleted=true and last_updated < :cutoff order by last_updated, id limit :limit for update",
+                new MapSqlParameterSource("cutoff", cutoff).addValue("limit", batchSize),
+                Long.class
+        );
+        if (ids.isEmpty()) return 0;
+
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+
+        jdbcTemplate.update(
+                "insert into course_archive(id, name, is_deleted, version, created_on, last_updated, prefix, number, rating, archived_on) " +
+                        "select id, name, is_deleted, version, created_on, last_updated, prefix, number, rating, now() from course where id in (:ids)",
+                params
+        );
+        int deleted = jdbcTemplate.update("delete from course where id in (:ids)", params);
+
+        // soft deleted courses should not be in the 2nd level cache anymore, but make sure
+        ids.forEach(id -> entityManagerFactory.getCache().evict(Course.class, id));
+
+        return deleted;
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(pause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
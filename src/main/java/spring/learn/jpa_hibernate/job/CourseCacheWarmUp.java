@@ -0,0 +1,239 @@
+package spring.learn.jpa_hibernate.job;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.Ehcache;
+import org.hibernate.cache.ehcache.internal.EhcacheRegionFactory;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills the 2nd level cache region of Course at startup -> otherwise the first minutes after a deploy all go to MySQL.
+ * <p>
+ * Called from JpaHibernateApplication#run -> a CommandLineRunner runs before the application reports ready.
+ * <p>
+ * Hot courses are collected from (each one optional):
+ * <p> 1. `course.cache-warm-up.ids-file` -> ids which were in the cache when the previous run shut down, see {@link #saveHotIds()}
+ * <p> 2. `course.cache-warm-up.recent` -> courses changed within this duration
+ * <p> 3. `course.cache-warm-up.min-id` .. `max-id` -> a fixed id range
+ * <p>
+ * At most `max-entries` ids (in the order above) are split into chunks of `chunk-size`. The chunks are loaded by
+ * `threads` threads at once, each chunk in a short read-only transaction of its own -> a loaded course is put into
+ * the 2nd level cache like on any other read.
+ * <p>
+ * Warming up is only an optimization -> a failing chunk is logged and skipped, startup goes on.
+ * <p>
+ * Only enabled with `course.cache-warm-up.enabled=true`
+ */
+@Slf4j
+@Component
+public class CourseCacheWarmUp {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${course.cache-warm-up.enabled:false}")
+    boolean enabled;
+
+    @Value("${course.cache-warm-up.ids-file:}")
+    String idsFile;
+
+    // zero -> off
+    @Value("${course.cache-warm-up.recent:PT0S}")
+    Duration recent;
+
+    // max-id zero -> off
+    @Value("${course.cache-warm-up.min-id:0}")
+    long minId;
+
+    @Value("${course.cache-warm-up.max-id:0}")
+    long maxId;
+
+    // should not be more than the heap part of the Course region in ehcache.xml -> the rest would be evicted right away
+    @Value("${course.cache-warm-up.max-entries:10000}")
+    int maxEntries;
+
+    // same as InClause#MAX_SIZE
+    @Value("${course.cache-warm-up.chunk-size:256}")
+    int chunkSize;
+
+    @Value("${course.cache-warm-up.threads:4}")
+    int threads;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private volatile WarmUpStats lastRun = WarmUpStats.NONE;
+
+    @PostConstruct
+    void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        // nothing is changed -> no dirty checking, no flush. see ReadOnlyTransactional
+        readOnlyTransaction.setReadOnly(true);
+
+        // a thread pool of 0 threads throws, chunks of 0 ids never end, `limit(-1)` throws -> all inside the
+        // CommandLineRunner. warming up must never fail (or hang) the startup -> switched off instead
+        if (enabled && (threads <= 0 || chunkSize <= 0 || maxEntries < 0)) {
+            log.warn("course cache warm-up -> disabled, threads ({}) and chunk-size ({}) must be positive, max-entries ({}) not negative",
+                    threads, chunkSize, maxEntries);
+            enabled = false;
+        }
+    }
+
+    public WarmUpStats warmUp() {
+        if (!enabled) return WarmUpStats.NONE;
+
+        long start = System.nanoTime();
+        List<Long> ids = hotIds();
+
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                threads,
+                task -> new Thread(task, "course-warm-up-" + threadNumber.incrementAndGet())
+        );
+
+        long loaded;
+        try {
+            List<CompletableFuture<Integer>> futures = chunks.stream()
+                    .map(chunk -> CompletableFuture
+                            .supplyAsync(() -> loadChunk(chunk), executor)
+                            .exceptionally(e -> {
+                                log.warn("course cache warm-up -> skipped a chunk of {} ids", chunk.size(), e);
+                                return 0;
+                            }))
+                    .toList();
+
+            loaded = futures.stream().mapToLong(CompletableFuture::join).sum();
+        } finally {
+            executor.shutdown();
+        }
+
+        lastRun = new WarmUpStats(ids.size(), loaded, chunks.size(), Duration.ofNanos(System.nanoTime() - start));
+        log.info("course cache warm-up -> {}", lastRun);
+        return lastRun;
+    }
+
+    public WarmUpStats getLastRun() {
+        return lastRun;
+    }
+
+    /**
+     * Writes the ids currently in the Course region to `ids-file` -> the next startup warms up exactly those.
+     * <p>
+     * Runs on shutdown, before the EntityManagerFactory (and the cache) is closed.
+     */
+    @PreDestroy
+    void saveHotIds() {
+        if (!enabled || idsFile.isBlank()) return;
+
+        try {
+            List<String> lines = cachedIds().stream().map(String::valueOf).toList();
+            Files.write(Path.of(idsFile), lines);
+            log.info("course cache warm-up -> saved {} hot ids to {}", lines.size(), idsFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("course cache warm-up -> could not save hot ids to {}", idsFile, e);
+        }
+    }
+
+    List<Long> hotIds() {
+        // LinkedHashSet -> no duplicates, and the sources keep their priority when cut at maxEntries
+        Set<Long> ids = new LinkedHashSet<>(readIdsFile());
+
+        readOnlyTransaction.executeWithoutResult(status -> {
+            if (!recent.isZero()) {
+                ids.addAll(em.createQuery("select c.id from Course c where c.lastUpdated >= :since order by c.lastUpdated desc", Long.class)
+                        .setParameter("since", LocalDateTime.now().minus(recent))
+                        .setMaxResults(maxEntries)
+                        .getResultList());
+            }
+            if (maxId > 0) {
+                ids.addAll(em.createQuery("select c.id from Course c where c.id between :minId and :maxId order by c.id", Long.class)
+                        .setParameter("minId", minId)
+                        .setParameter("maxId", maxId)
+                        .setMaxResults(maxEntries)
+                        .getResultList());
+            }
+        });
+
+        return ids.stream().limit(maxEntries).toList();
+    }
+
+    private int loadChunk(List<Long> chunk) {
+        return readOnlyTransaction.execute(status -> em
+                .createQuery("select c from Course c where c.id in :ids", Course.class)
+                .setParameter("ids", chunk)
+                .getResultList()
+                .size());
+    }
+
+    private List<Long> readIdsFile() {
+        if (idsFile.isBlank()) return List.of();
+
+        Path path = Path.of(idsFile);
+        // first run -> nothing saved yet
+        if (!Files.exists(path)) return List.of();
+
+        try {
+            return Files.readAllLines(path).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .map(Long::valueOf)
+                    .toList();
+        } catch (IOException | NumberFormatException e) {
+            log.warn("course cache warm-up -> ignoring unreadable {}", idsFile, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * JPA cannot list what is in a cache region -> asks Ehcache for the keys, and Hibernate to turn a key into an id
+     */
+    private List<Long> cachedIds() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        EntityDataAccess access = sessionFactory.getMetamodel().entityPersister(Course.class).getCacheAccessStrategy();
+
+        if (!(sessionFactory.getCache().getRegionFactory() instanceof EhcacheRegionFactory regionFactory)) return List.of();
+        Ehcache region = regionFactory.getCacheManager().getEhcache(access.getRegion().getName());
+
+        List<?> keys = region.getKeys();
+        return keys.stream()
+                .map(key -> (Long) access.getCacheKeyId(key))
+                .limit(maxEntries)
+                .toList();
+    }
+}
@@ -0,0 +1,20 @@
+package spring.learn.jpa_hibernate.job;
+
+import java.time.Duration;
+
+/**
+ * What a single {@link CourseCacheWarmUp} run did.
+ *
+ * @param requested distinct ids asked for by all sources together (after `max-entries`)
+ * @param loaded    courses actually loaded into the 2nd level cache -> less than requested for deleted / unknown ids
+ * @param chunks    queries sent, in parallel
+ */
+public record WarmUpStats(int requested, long loaded, int chunks, Duration elapsed) {
+
+    public static final WarmUpStats NONE = new WarmUpStats(0, 0, 0, Duration.ZERO);
+
+    @Override
+    public String toString() {
+        return loaded + "/" + requested + " courses in " + chunks + " chunks, " + elapsed.toMillis() + " ms";
+    }
+}
@@ -0,0 +1,17 @@
+package spring.learn.jpa_hibernate.projection;
+
+import spring.learn.jpa_hibernate.entity.basics.CourseRating;
+
+/**
+ * Only what a list screen needs from a Course.
+ * <p>
+ * Loaded with a JPQL constructor expression -> "select new ...CourseSummary(c.id, c.name, c.rating) from Course c"
+ * <p>
+ * Not an entity, so Hibernate does not:
+ * <p> 1. select the other columns (courseCode, timestamps, ...)
+ * <p> 2. put it in the persistence context or keep a snapshot for dirty checking
+ * <p>
+ * @see spring.learn.jpa_hibernate.repository.speing_data.CourseSpringDataRepository#findSummariesByName(String)
+ */
+public record CourseSummary(Long id, String name, CourseRating rating) {
+}
@@ -0,0 +1,9 @@
+package spring.learn.jpa_hibernate.projection;
+
+/**
+ * Same as {@link CourseSummary} but for Subject
+ *
+ * @see spring.learn.jpa_hibernate.repository.relationship.SubjectRepository#findAllSummaries()
+ */
+public record SubjectSummary(Integer id, String name) {
+}
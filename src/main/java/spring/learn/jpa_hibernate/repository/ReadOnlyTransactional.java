@@ -0,0 +1,36 @@
+package spring.learn.jpa_hibernate.repository;
+
+import org.springframework.core.annotation.AliasFor;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.*;
+
+/**
+ * `@Transactional(readOnly = true)` for finders.
+ * <p>
+ * With a read-write transaction, for every entity it loads Hibernate keeps a copy of its state (hydrated snapshot),
+ * and at flush compares each entity against that copy (dirty checking) -> wasted CPU and heap when nothing is changed.
+ * <p>
+ * With readOnly = true, Spring (HibernateJpaDialect) does the following:
+ * <p> 1. `session.setDefaultReadOnly(true)` -> entities are loaded read-only -> no snapshots are kept
+ * <p> 2. `session.setHibernateFlushMode(FlushMode.MANUAL)` -> no automatic flush, so no dirty checking
+ * <p> 3. `connection.setReadOnly(true)` -> MySQL can skip some bookkeeping for read-only transactions
+ * <p>
+ * Put it on a method to override a class-level `@Transactional`. Changes made to entities loaded here are NOT
+ * written back to the database.
+ * <p>
+ * NOTE: when called from an already running read-write transaction, the method simply joins it -> stays read-write
+ * <p>
+ * <a href="https://vladmihalcea.com/spring-read-only-transaction-hibernate-optimization/">https://vladmihalcea.com/spring-read-only-transaction-hibernate-optimization/</a>
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Transactional(readOnly = true)
+public @interface ReadOnlyTransactional {
+
+    // a method level annotation replaces the class level one entirely -> so isolation has to be given again
+    @AliasFor(annotation = Transactional.class)
+    Isolation isolation() default Isolation.DEFAULT;
+}
@@ -1,14 +1,34 @@
 package spring.learn.jpa_hibernate.repository.basics;
 
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
 import spring.learn.jpa_hibernate.entity.basics.Course;
+import spring.learn.jpa_hibernate.repository.ReadOnlyTransactional;
+import spring.learn.jpa_hibernate.repository.cache.EntityCaches;
+import spring.learn.jpa_hibernate.repository.cache.QueryCaches;
 
+import javax.annotation.PostConstruct;
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+@Slf4j
 @Repository
 // @Transactional -> a transaction is automatically `started` when entering the method
 //                      and `committed / rolled back` at the end.
@@ -19,11 +39,59 @@ public class CourseJpaRepository {
     @PersistenceContext
     EntityManager em;
 
+    // keep it a multiple of `hibernate.jdbc_batch_size` -> every flush then sends only full batches
+    @Value("${course.jpa.save-chunk-size:100}")
+    int saveChunkSize;
+
+    @PostConstruct
+    void init() {
+        // 0 -> `saved % 0` throws, negative -> never flushes, so the persistence context grows without a bound
+        Assert.isTrue(saveChunkSize > 0, "course.jpa.save-chunk-size must be positive");
+    }
+
+    @ReadOnlyTransactional(isolation = Isolation.READ_COMMITTED)
     public Course findById(long id) {
         Course course = em.find(Course.class, id);
         return course;
     }
 
+    /**
+     * Instead of calling {@link #findById(long)} in a loop:
+     * <p> 1. ids already in the persistence context (1st level cache) or in the 2nd level cache -> no round trip
+     * <p> 2. only the rest is queried with "select c from Course c where c.id in :ids"
+     * -> chunked, and padded by Hibernate (`in_clause_parameter_padding`). See {@link InClause}
+     * <p>
+     * Unknown and soft deleted ids are skipped. Result is in the order of the given ids.
+     */
+    @ReadOnlyTransactional(isolation = Isolation.READ_COMMITTED)
+    public List<Course> findByIds(Collection<Long> ids) {
+
+        Cache secondLevelCache = em.getEntityManagerFactory().getCache();
+
+        Map<Long, Course> byId = new LinkedHashMap<>();
+        List<Long> misses = new ArrayList<>();
+
+        for (Long id : ids) {
+            if (byId.containsKey(id)) continue;
+
+            boolean cached = PersistenceContexts.getManaged(em, Course.class, id) != null
+                    || secondLevelCache.contains(Course.class, id);
+
+            // em.find() is served from one of the caches here -> no query
+            byId.put(id, cached ? em.find(Course.class, id) : null);
+            if (!cached) misses.add(id);
+        }
+
+        for (List<Long> chunk : InClause.chunks(misses)) {
+            em.createQuery("select c from Course c where c.id in :ids", Course.class)
+                    .setParameter("ids", chunk)
+                    .getResultList()
+                    .forEach(course -> byId.put(course.getId(), course));
+        }
+
+        return byId.values().stream().filter(Objects::nonNull).toList();
+    }
+
     /**
      * <a href="https://stackoverflow.com/a/1070629/10582056">https://stackoverflow.com/a/1070629/10582056</a>
      */
@@ -34,16 +102,120 @@ public class CourseJpaRepository {
         if (course.getId() == null) em.persist(course);
             // if there is already an `id` field -> then it is an old row
             // then it should be updated
-        else em.merge(course);
+        else {
+            // a course built by hand -> `new Course(id, name)` -> has no version.
+            // Hibernate would take it for a NEW course (null version = unsaved), so take the version of the current row
+            // -> last write wins, same as before @Version. Load the course first to get a real conflict check
+            if (course.getVersion() == null) {
+                Course current = em.find(Course.class, course.getId());
+                if (current != null) course.setVersion(current.getVersion());
+            }
+            em.merge(course);
+        }
 
         return course;
     }
 
+    /**
+     * {@link #save(Course)} for many courses in a single transaction.
+     * <p>
+     * Every managed entity stays in the persistence context until the transaction ends.
+     * So with tens of thousands of courses, the context keeps growing,
+     * and each flush has to dirty check ALL of them -> gets slower and slower.
+     * <p>
+     * Here the persistence context is flushed and cleared after every {@link #saveChunkSize} courses ->
+     * memory stays bounded and each flush only checks the current chunk.
+     * <p>
+     * NOTE: `clear()` detaches EVERYTHING in the context, not only these courses.
+     * Do not rely on entities loaded earlier in the same transaction staying managed.
+     *
+     * @return number of saved courses
+     */
+    public long saveAll(Iterable<Course> courses) {
+        return saveAll(StreamSupport.stream(courses.spliterator(), false));
+    }
+
+    public long saveAll(Stream<Course> courses) {
+
+        long saved = 0;
+        long chunkStart = System.nanoTime();
+
+        Iterator<Course> iterator = courses.iterator();
+        while (iterator.hasNext()) {
+            save(iterator.next());
+            saved++;
+
+            if (saved % saveChunkSize == 0) {
+                flushAndClear(saved, chunkStart);
+                chunkStart = System.nanoTime();
+            }
+        }
+
+        // last chunk can be smaller than saveChunkSize
+        if (saved % saveChunkSize != 0) flushAndClear(saved, chunkStart);
+
+        return saved;
+    }
+
+    private void flushAndClear(long saved, long chunkStart) {
+        em.flush();
+        em.clear();
+        log.info("saved courses up to #{} -> chunk took {} ms", saved, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chunkStart));
+    }
+
     public void deleteById(long id) {
         Query deleteQuery = em.createNamedQuery("Course.deleteById").setParameter("id", id);
         deleteQuery.executeUpdate();
     }
 
+    /**
+     * Soft deletes many courses -> "update course set is_deleted=true where id in (...)"
+     * <p>
+     * Same result as removing each course one by one (which runs the @SQLDelete of Course), but only
+     * 1 statement per {@link InClause#MAX_SIZE} ids.
+     * <p>
+     * NOTE: {@link #deleteById(long)} uses the `Course.deleteById` named query -> that is a HARD delete.
+     * <p>
+     * Any bulk statement makes Hibernate evict the WHOLE 2nd level cache region of the tables it touches
+     * (and a native one, of every table). That is avoided here with an empty query space, and only the deleted
+     * courses are evicted from the cache (now and after the commit, see EntityCaches) and detached from the
+     * persistence context by hand. Cached queries over `course` are invalidated by hand as well -> see QueryCaches
+     *
+     * @return number of soft deleted rows
+     */
+    public int deleteAllByIds(Collection<Long> ids) {
+
+        // send pending changes first -> they could touch the rows which are about to be deleted
+        em.flush();
+
+        int deleted = 0;
+        for (List<Long> chunk : InClause.chunks(ids)) {
+            // version is bumped as well -> anyone still holding the old version gets a conflict
+            deleted += em.createNativeQuery("update course set is_deleted=true, version=version+1 where is_deleted=false and id in (:ids)")
+                    .setParameter("ids", InClause.padded(chunk))
+                    .unwrap(NativeQuery.class)
+                    // "" -> matches no table -> Hibernate does not invalidate any cache region
+                    .addSynchronizedQuerySpace("")
+                    .executeUpdate();
+
+            chunk.forEach(id -> {
+                // same as @PreRemove on Course
+                Course course = PersistenceContexts.getManaged(em, Course.class, id);
+                if (course != null) {
+                    course.preRemove();
+                    em.detach(course);
+                }
+            });
+        }
+
+        if (deleted > 0) {
+            // now AND after the commit -> see EntityCaches
+            EntityCaches.evictOnCompletion(em, Course.class, ids);
+            QueryCaches.invalidateOnCompletion(em, "course");
+        }
+        return deleted;
+    }
+
     /**
      * Now you can see that even after persisting, any changes I make to `course` object are automatically tracked and
      * persisted by the `EntityManager`. <p>
@@ -0,0 +1,61 @@
+package spring.learn.jpa_hibernate.repository.basics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Helpers for "select ... where id in (?, ?, ...)" queries.
+ * <p>
+ * Every different number of `?` is a different SQL string. So 1 id, 2 ids, 3 ids, ... 300 ids -> 300 statements
+ * in the prepared statement cache (and in Hibernate's query plan cache).
+ * <p>
+ * To keep those caches small:
+ * <p> 1. ids are split into chunks of at most {@link #MAX_SIZE}
+ * <p> 2. each chunk is padded up to the next power of two by repeating its last id -> `in (1, 2, 3, 3)`.
+ * So there are only 9 different statements: 1, 2, 4, ..., 256
+ * <p>
+ * Hibernate can do step 2 by itself for JPQL -> `hibernate.query.in_clause_parameter_padding` in application.properties
+ */
+final class InClause {
+
+    static final int MAX_SIZE = 256;
+
+    private InClause() {
+    }
+
+    /**
+     * duplicates are removed, order of first appearance is kept
+     */
+    static <T> List<List<T>> chunks(Collection<T> values) {
+        List<T> distinct = new ArrayList<>(new LinkedHashSet<>(values));
+
+        List<List<T>> chunks = new ArrayList<>((distinct.size() + MAX_SIZE - 1) / MAX_SIZE);
+        for (int from = 0; from < distinct.size(); from += MAX_SIZE) {
+            chunks.add(distinct.subList(from, Math.min(from + MAX_SIZE, distinct.size())));
+        }
+        return chunks;
+    }
+
+    static <T> List<T> padded(List<T> chunk) {
+        if (chunk.isEmpty()) return chunk;
+
+        // smallest power of two >= size
+        int paddedSize = chunk.size() == 1 ? 1 : Integer.highestOneBit(chunk.size() - 1) << 1;
+        if (paddedSize == chunk.size()) return chunk;
+
+        List<T> padded = new ArrayList<>(paddedSize);
+        padded.addAll(chunk);
+        padded.addAll(Collections.nCopies(paddedSize - chunk.size(), chunk.get(chunk.size() - 1)));
+        return padded;
+    }
+
+    /**
+     * 3 -> "?, ?, ?"
+     */
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,136 @@
+package spring.learn.jpa_hibernate.repository.basics;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.Assert;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A faster alternative to {@link org.springframework.jdbc.core.BeanPropertyRowMapper}.
+ * <p>
+ * BeanPropertyRowMapper introspects the bean with reflection every time it is created,
+ * and then matches column names to properties for every query.
+ * <p>
+ * This mapper does all of that ONLY ONCE per (bean class, column list):
+ * <p> 1. the no-args constructor and setters are resolved to {@link MethodHandle}s
+ * <p> 2. a reader is chosen for each column depending on the setter type -> `getInt()`, `getString()`, ...
+ * <p> 3. the result is cached -> so {@link #of(Class, String...)} always returns the same instance
+ * <p>
+ * Columns are read by INDEX, not by label. So the select must list the columns in the same order:
+ * <pre>
+ *     IndexedRowMapper.of(PersonBean.class, "id", "name", "location", "birth_date")
+ *     -> "select id, name, location, birth_date from person"
+ * </pre>
+ * Instances are immutable -> safe to share between threads.
+ */
+public final class IndexedRowMapper<T> implements RowMapper<T> {
+
+    private static final Map<Key, IndexedRowMapper<?>> CACHE = new ConcurrentHashMap<>();
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final MethodHandle constructor;
+
+    private final MethodHandle[] setters;
+
+    private final ColumnReader[] readers;
+
+    private IndexedRowMapper(Class<T> type, String[] columns) {
+
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+        try {
+            this.constructor = lookup
+                    .findConstructor(type, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+
+            this.setters = new MethodHandle[columns.length];
+            this.readers = new ColumnReader[columns.length];
+
+            for (int i = 0; i < columns.length; i++) {
+
+                // birth_date -> birthDate
+                String property = JdbcUtils.convertUnderscoreNameToPropertyName(columns[i]);
+                PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, property);
+                Assert.state(
+                        descriptor != null && descriptor.getWriteMethod() != null,
+                        () -> "No setter for column '" + property + "' on " + type.getName()
+                );
+
+                setters[i] = lookup.unreflect(descriptor.getWriteMethod()).asType(SETTER_TYPE);
+                readers[i] = readerFor(descriptor.getPropertyType());
+            }
+
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create row mapper for " + type.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> IndexedRowMapper<T> of(Class<T> type, String... columns) {
+        return (IndexedRowMapper<T>) CACHE.computeIfAbsent(
+                new Key(type, List.of(columns)),
+                key -> new IndexedRowMapper<>(type, columns)
+        );
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        try {
+            Object bean = constructor.invokeExact();
+
+            // jdbc columns start at 1
+            for (int i = 0; i < setters.length; i++) {
+                Object value = readers[i].read(rs, i + 1);
+                // primitive setters cannot take a null -> leave the default value
+                if (value != null) setters[i].invokeExact(bean, value);
+            }
+
+            return (T) bean;
+
+        } catch (SQLException | RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ColumnReader readerFor(Class<?> type) {
+        if (type == int.class || type == Integer.class) return (rs, i) -> nullable(rs, rs.getInt(i));
+        if (type == long.class || type == Long.class) return (rs, i) -> nullable(rs, rs.getLong(i));
+        if (type == boolean.class || type == Boolean.class) return (rs, i) -> nullable(rs, rs.getBoolean(i));
+        if (type == double.class || type == Double.class) return (rs, i) -> nullable(rs, rs.getDouble(i));
+        if (type == String.class) return ResultSet::getString;
+        // java.util.Date -> Timestamp is a subclass, so it can be set directly
+        if (type == java.util.Date.class) return ResultSet::getTimestamp;
+        if (type == LocalDateTime.class) return (rs, i) -> rs.getObject(i, LocalDateTime.class);
+        if (type == LocalDate.class) return (rs, i) -> rs.getObject(i, LocalDate.class);
+        return (rs, i) -> rs.getObject(i, type);
+    }
+
+    // getInt() and friends return 0 for a sql NULL -> need wasNull() to tell the difference
+    private static Object nullable(ResultSet rs, Object value) throws SQLException {
+        return rs.wasNull() ? null : value;
+    }
+
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet rs, int index) throws SQLException;
+    }
+
+    private record Key(Class<?> type, List<String> columns) {
+    }
+}
@@ -0,0 +1,32 @@
+package spring.learn.jpa_hibernate.repository.basics;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import javax.persistence.EntityManager;
+import java.io.Serializable;
+
+/**
+ * Peeks into the persistence context (1st level cache) of an EntityManager.
+ * <p>
+ * `em.find()` cannot be used for this -> when the entity is not already loaded, it goes to the database.
+ * JPA has no API for "only if already loaded", so this uses Hibernate's session internals.
+ */
+public final class PersistenceContexts {
+
+    private PersistenceContexts() {
+    }
+
+    /**
+     * @return the managed instance, or `null` if it is not in the persistence context. Never hits the database
+     */
+    public static <T> T getManaged(EntityManager em, Class<T> type, Object id) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(type);
+
+        // Hibernate 5 still types ids as Serializable -> every id type used here (Integer, Long) is
+        Object entity = session.getPersistenceContextInternal()
+                .getEntity(session.generateEntityKey((Serializable) id, persister));
+        return type.cast(entity);
+    }
+}
@@ -1,43 +1,227 @@
 package spring.learn.jpa_hibernate.repository.basics;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
 import spring.learn.jpa_hibernate.bean.PersonBean;
+import spring.learn.jpa_hibernate.entity.basics.Person;
+import spring.learn.jpa_hibernate.repository.cache.NearCacheStats;
+import spring.learn.jpa_hibernate.repository.paging.KeysetPage;
 
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Repository
 // if something talks with database -> use @Repository
 public class PersonJdbcDao {
 
+    // explicit column list instead of `*` -> the column order must match PERSON_ROW_MAPPER
+    private static final String PERSON_COLUMNS = "id, name, location, birth_date";
+
+    // created once and shared by every finder, instead of `new BeanPropertyRowMapper<>(PersonBean.class)` per query
+    private static final RowMapper<PersonBean> PERSON_ROW_MAPPER =
+            IndexedRowMapper.of(PersonBean.class, "id", "name", "location", "birth_date");
+
     @Autowired
     JdbcTemplate jdbcTemplate;
 
+    // same `person` table as the Person entity -> see evictFromHibernateCaches()
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    // how many rows are sent to the database in a single round trip by insertAll()
+    @Value("${person.jdbc.batch-size:500}")
+    int batchSize;
+
+    // how many rows the server-side cursor hands over per round trip in streamAll()
+    @Value("${person.jdbc.fetch-size:1000}")
+    int fetchSize;
+
+    // upper bound of persons kept by the findById() cache
+    @Value("${person.jdbc.cache.maximum-size:10000}")
+    long cacheMaximumSize;
+
+    // safety net for writes to `person` which do not go through this class
+    @Value("${person.jdbc.cache.expire-after-write:PT10M}")
+    Duration cacheExpireAfterWrite;
+
+    /**
+     * Read-through cache of {@link #findById(int)} -> the Hibernate 2nd level cache does not see JdbcTemplate at all.
+     * <p>
+     * Caffeine evicts with W-TinyLFU: a new entry only gets in if it was asked for more often than the entry it would
+     * push out -> a scan over many cold ids cannot flush out the few hot ones (plain LRU would).
+     * <a href="https://github.com/ben-manes/caffeine/wiki/Efficiency">https://github.com/ben-manes/caffeine/wiki/Efficiency</a>
+     * <p>
+     * Every write in this class invalidates the ids it touched -> see {@link #evictCaches(Collection)}
+     * <p>
+     * Only filled outside of transactions -> the cache is shared by all threads, but a transaction can read its own
+     * uncommitted rows. Cached, those would be visible to everyone, and stay even after a rollback. see {@link #findById(int)}
+     */
+    private LoadingCache<Integer, PersonBean> byIdCache;
+
+    @PostConstruct
+    void buildCache() {
+        byIdCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfterWrite(cacheExpireAfterWrite)
+                // hit / miss / load time counters -> see getCacheStats()
+                .recordStats()
+                // a missing id throws EmptyResultDataAccessException -> passed on to the caller, nothing is cached
+                .build(this::load);
+    }
+
+    private PersonBean load(int id) {
+        return jdbcTemplate.queryForObject(
+                "select " + PERSON_COLUMNS + " from person where id=?",
+                PERSON_ROW_MAPPER,
+                id
+        );
+    }
+
     // select * from person
     public List<PersonBean> findAll() {
         return jdbcTemplate.query(
-                "select * from person",
-                new BeanPropertyRowMapper<>(PersonBean.class)
+                "select " + PERSON_COLUMNS + " from person",
+                PERSON_ROW_MAPPER
         );
     }
 
-    // "select * from person where id = ?"
-    public PersonBean findById(int id) {
-        return jdbcTemplate.queryForObject(
-                "select * from person where id=?",
-                new BeanPropertyRowMapper<>(PersonBean.class),
-                id
+    /**
+     * "select * from person where id > ? order by id limit ?"
+     * <p>
+     * Keyset pagination -> see {@link KeysetPage}.
+     *
+     * @param cursor `null` for the first page, otherwise {@link KeysetPage#nextCursor()} of the previous page
+     */
+    public KeysetPage<PersonBean> findPage(String cursor, int size) {
+        return findPageAfter((int) KeysetPage.decode(cursor), size);
+    }
+
+    public KeysetPage<PersonBean> findPageAfter(int lastSeenId, int size) {
+        List<PersonBean> rows = jdbcTemplate.query(
+                "select " + PERSON_COLUMNS + " from person where id > ? order by id limit ?",
+                PERSON_ROW_MAPPER,
+                lastSeenId,
+                KeysetPage.limit(size)
         );
-        // We can add other params as well ->
+        return KeysetPage.of(rows, size, PersonBean::getId);
+    }
+
+    /**
+     * Same as {@link #findAll()} but rows are NOT collected into a List.
+     * <p>
+     * Because `useCursorFetch=true` is set on the datasource url, MySQL keeps a server-side cursor and only
+     * {@link #fetchSize} rows are in memory at a time -> memory stays flat regardless of the table size.
+     * <p>
+     * NOTE: the connection is held until the stream is closed. So ALWAYS use try-with-resources:
+     * <pre>
+     *     try (Stream&lt;PersonBean&gt; persons = personJdbcDao.streamAll()) { ... }
+     * </pre>
+     * Or use {@link #forEach(Consumer)} which closes the stream by itself.
+     */
+    public Stream<PersonBean> streamAll() {
+        return streamAll(fetchSize);
+    }
+
+    public Stream<PersonBean> streamAll(int fetchSize) {
+        return jdbcTemplate.queryForStream(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            "select " + PERSON_COLUMNS + " from person",
+                            ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY
+                    );
+                    statement.setFetchSize(fetchSize);
+                    return statement;
+                },
+                PERSON_ROW_MAPPER
+        );
+    }
+
+    /**
+     * callback variant of {@link #streamAll()}
+     */
+    public void forEach(Consumer<PersonBean> action) {
+        try (Stream<PersonBean> persons = streamAll()) {
+            persons.forEach(action);
+        }
+    }
+
+    /**
+     * "select * from person where id = ?" -> only on a cache miss, see {@link #byIdCache}
+     * <p>
+     * Returns a copy -> a caller changing the bean must not change what everyone else gets from the cache
+     * <p>
+     * Inside a transaction -> always from the database, the cache is neither read nor filled.
+     * The transaction may have written this row (or will roll back a row it inserted) -> not for everyone else to see
+     */
+    public PersonBean findById(int id) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) return load(id);
+
+        PersonBean cached = byIdCache.get(id);
+        // Date is mutable -> copied as well. `birth_date` is nullable
+        Date birthDate = cached.getBirthDate() == null ? null : new Date(cached.getBirthDate().getTime());
+        return new PersonBean(cached.getId(), cached.getName(), cached.getLocation(), birthDate);
+        // see the query in buildCache(). We can add other params as well ->
         // "select * from person where id=? and name=?", ...... , id, name
     }
 
+    public NearCacheStats getCacheStats() {
+        return NearCacheStats.of(byIdCache);
+    }
+
+    /**
+     * "select * from person where id in (?, ?, ...)"
+     * <p>
+     * Instead of calling {@link #findById(int)} in a loop -> 1 round trip per {@link InClause#MAX_SIZE} ids.
+     * Ids are chunked and padded -> see {@link InClause}.
+     * <p>
+     * Unknown ids are skipped. Result is in the order of the given ids.
+     */
+    public List<PersonBean> findByIds(Collection<Integer> ids) {
+
+        Map<Integer, PersonBean> byId = new LinkedHashMap<>();
+        for (Integer id : ids) byId.put(id, null);
+
+        for (List<Integer> chunk : InClause.chunks(ids)) {
+            List<Integer> padded = InClause.padded(chunk);
+
+            jdbcTemplate.query(
+                    "select " + PERSON_COLUMNS + " from person where id in (" + InClause.placeholders(padded.size()) + ")",
+                    PERSON_ROW_MAPPER,
+                    padded.toArray()
+            ).forEach(personBean -> byId.put(personBean.getId(), personBean));
+        }
+
+        return byId.values().stream().filter(Objects::nonNull).toList();
+    }
+
     /**
      * using custom row mapper
      *
@@ -46,7 +230,7 @@ public class PersonJdbcDao {
      */
     public PersonBean findByIdWithPersonRowMapper(int id) {
         return jdbcTemplate.queryForObject(
-                "select * from person where id=?",
+                "select " + PERSON_COLUMNS + " from person where id=?",
                 new PersonRowMapper(),
                 id
         );
@@ -59,10 +243,12 @@ public class PersonJdbcDao {
      * "delete from person where id = ?"
      */
     public int deleteById(int id) {
-        return jdbcTemplate.update(
+        int deleted = jdbcTemplate.update(
                 "delete from person where id=?",
                 id
         );
+        evictCaches(List.of(id));
+        return deleted;
     }
 
     /**
@@ -71,17 +257,92 @@ public class PersonJdbcDao {
      * @see #deleteById(int)
      */
     public int insert(PersonBean personBean) {
-        return jdbcTemplate.update(
+        int inserted = jdbcTemplate.update(
                 "insert into person(name, location, birth_date) value (?, ?, ?)",
                 personBean.getName(),
                 personBean.getLocation(),
                 new Timestamp(personBean.getBirthDate().getTime())
         );
         // no need to give id -> because table auto_increment
+        evictCaches(List.of());
+        return inserted;
+    }
+
+    /**
+     * Same as {@link #insert(PersonBean)} but for many rows at once.
+     * <p>
+     * Rows are sent in chunks of {@link #batchSize} with `addBatch()` / `executeBatch()` -> 1 round trip per chunk
+     * instead of 1 round trip per row. Because `rewriteBatchedStatements=true` is set on the datasource url, MySQL driver
+     * rewrites each chunk into a single multi-row statement: "insert into person(...) values (?, ?, ?), (?, ?, ?), ..."
+     * <p>
+     * The generated `auto_increment` ids are written back into each PersonBean -> no need for another select.
+     * <p>
+     * NOTE: with rewritten statements, the driver cannot tell the count of each row.
+     * So returned counts can be {@link Statement#SUCCESS_NO_INFO} instead of 1
+     */
+    public int[] insertAll(Collection<PersonBean> personBeans) {
+        return insertAll(personBeans, batchSize);
+    }
+
+    public int[] insertAll(Collection<PersonBean> personBeans, int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+
+        int[] inserted = jdbcTemplate.execute((ConnectionCallback<int[]>) connection -> {
+
+            int[] counts = new int[personBeans.size()];
+            int offset = 0;
+
+            // `values`, not `value` -> the driver only finds the values clause to repeat by that keyword.
+            // With `value` the rewritten multi-row statement is malformed
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "insert into person(name, location, birth_date) values (?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS
+            )) {
+                List<PersonBean> chunk = new ArrayList<>(batchSize);
+
+                for (PersonBean personBean : personBeans) {
+                    statement.setString(1, personBean.getName());
+                    statement.setString(2, personBean.getLocation());
+                    statement.setTimestamp(3, new Timestamp(personBean.getBirthDate().getTime()));
+                    statement.addBatch();
+
+                    chunk.add(personBean);
+                    if (chunk.size() == batchSize) offset = executeChunk(statement, chunk, counts, offset);
+                }
+
+                // last chunk can be smaller than batchSize
+                if (!chunk.isEmpty()) executeChunk(statement, chunk, counts, offset);
+            }
+
+            return counts;
+        });
+
+        // generated ids were written back by executeChunk()
+        evictCaches(personBeans.stream().map(PersonBean::getId).toList());
+        return inserted;
+    }
+
+    /**
+     * sends the queued rows and copies generated ids back into the beans of the chunk, in the same order
+     */
+    private int executeChunk(PreparedStatement statement, List<PersonBean> chunk, int[] counts, int offset) throws SQLException {
+
+        int[] chunkCounts = statement.executeBatch();
+        System.arraycopy(chunkCounts, 0, counts, offset, chunkCounts.length);
+
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+            for (PersonBean personBean : chunk) {
+                if (!generatedKeys.next()) break;
+                personBean.setId(generatedKeys.getInt(1));
+            }
+        }
+
+        chunk.clear();
+        return offset + chunkCounts.length;
     }
 
     public int update(PersonBean personBean) {
-        return jdbcTemplate.update(
+        int updated = jdbcTemplate.update(
                 "update person set name=?, location=?, birth_date=? where id=?",
                 personBean.getName(),
                 personBean.getLocation(),
@@ -89,6 +350,74 @@ public class PersonJdbcDao {
                 personBean.getId()
         );
         // no need to give id -> because table auto_increment
+        evictCaches(List.of(personBean.getId()));
+        return updated;
+    }
+
+    /**
+     * 1. {@link #byIdCache} -> the written persons.
+     * <p>
+     * 2. Hibernate caches -> JdbcTemplate writes bypass Hibernate, so it cannot invalidate its own caches of the
+     * `person` table. Without this, PersonJpaRepository would keep returning the old rows from the 2nd level / query
+     * cache. Only the written persons and the cached `find_all` results (own region, see Person) are thrown away
+     * <p>
+     * Both are evicted right away AND once more when the transaction ends -> until the commit, anyone can still read
+     * the old row and cache it again, and it would then stay stale until it expires
+     *
+     * @param ids empty for {@link #insert(PersonBean)} -> its id is not known, but it cannot be cached before the commit
+     *            either: findById() skips the cache inside a transaction
+     */
+    private void evictCaches(Collection<Integer> ids) {
+        evictCachesNow(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactionEvictions().ids.addAll(ids);
+        }
+    }
+
+    /**
+     * One per transaction -> N writes in a transaction collect their ids here, instead of registering N synchronizations
+     */
+    private TransactionEvictions transactionEvictions() {
+        TransactionEvictions evictions = (TransactionEvictions) TransactionSynchronizationManager.getResource(this);
+        if (evictions == null) {
+            evictions = new TransactionEvictions();
+            TransactionSynchronizationManager.bindResource(this, evictions);
+            TransactionSynchronizationManager.registerSynchronization(evictions);
+        }
+        return evictions;
+    }
+
+    private void evictCachesNow(Collection<Integer> ids) {
+        byIdCache.invalidateAll(ids);
+
+        org.hibernate.Cache cache = entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class);
+        ids.forEach(id -> cache.evict(Person.class, id));
+        cache.evictQueryRegion(Person.QUERY_CACHE_REGION);
+    }
+
+    /**
+     * The ids written by one transaction -> bound as a transaction resource, keyed by this PersonJdbcDao
+     */
+    private final class TransactionEvictions implements TransactionSynchronization {
+
+        private final Set<Integer> ids = new HashSet<>();
+
+        // REQUIRES_NEW -> the inner transaction binds its own
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(PersonJdbcDao.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(PersonJdbcDao.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PersonJdbcDao.this);
+            evictCachesNow(ids);
+        }
     }
 
     /**
@@ -101,15 +430,18 @@ public class PersonJdbcDao {
          * this gives me 2 options.
          * Use table column names and use row number.
          * Using these 2, we can pinpoint a specific cell in table
+         * <p>
+         * Columns are read by index (1, 2, ...) rather than by name -> `rs.getInt("id")` has to search the column
+         * labels on every row. This only works because the select lists the columns: see PERSON_COLUMNS
          */
         @Override
         public PersonBean mapRow(ResultSet rs, int rowNum) throws SQLException {
 
             PersonBean personBean = new PersonBean(
-                    rs.getInt("id"),
-                    rs.getString("name"),
-                    rs.getString("location"),
-                    rs.getTimestamp("birth_date")
+                    rs.getInt(1),
+                    rs.getString(2),
+                    rs.getString(3),
+                    rs.getTimestamp(4)
             );
 
             return personBean;
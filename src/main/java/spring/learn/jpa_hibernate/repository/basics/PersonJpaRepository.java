@@ -1,12 +1,18 @@
 package spring.learn.jpa_hibernate.repository.basics;
 
+import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import spring.learn.jpa_hibernate.entity.basics.Person;
+import spring.learn.jpa_hibernate.repository.paging.KeysetPage;
+import spring.learn.jpa_hibernate.repository.ReadOnlyTransactional;
+import spring.learn.jpa_hibernate.repository.cache.EntityCaches;
+import spring.learn.jpa_hibernate.repository.cache.QueryCaches;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -22,6 +28,7 @@ public class PersonJpaRepository {
 
     // Useful difference between Hibernate and JPA: https://www.baeldung.com/hibernate-save-persist-update-merge-saveorupdate
 
+    @ReadOnlyTransactional
     public Person findById(int id) {
         return entityManager.find(Person.class, id);
     }
@@ -36,6 +43,48 @@ public class PersonJpaRepository {
         // one issue with this approach is that it uses 2 DB calls to do single deletion
         // But this is simple and easy to understand
         // Better approach would be to use named queries -> single call fo deletion
+        // see deleteAllByIds(Collection)
+    }
+
+    /**
+     * "delete from person where id in (...)" -> 1 statement per {@link InClause#MAX_SIZE} ids,
+     * instead of 2 statements per id with {@link #deleteById(int)}
+     * <p>
+     * A bulk delete bypasses the persistence context. So already loaded persons are detached here ->
+     * otherwise they would still look alive (and a later flush could try to update a deleted row)
+     * <p>
+     * Person is @Cacheable -> a JPQL bulk delete would evict the WHOLE Person region and every cached query over
+     * `person`. Same as CourseJpaRepository#deleteAllByIds: a native delete with an empty query space, then only the
+     * deleted persons are evicted (now and after the commit, see EntityCaches), and only cached queries over `person` are invalidated -> see QueryCaches
+     *
+     * @return number of deleted rows
+     */
+    public int deleteAllByIds(Collection<Integer> ids) {
+
+        // send pending changes first -> they could touch the rows which are about to be deleted
+        entityManager.flush();
+
+        int deleted = 0;
+        for (List<Integer> chunk : InClause.chunks(ids)) {
+            deleted += entityManager.createNativeQuery("delete from person where id in (:ids)")
+                    .setParameter("ids", InClause.padded(chunk))
+                    .unwrap(NativeQuery.class)
+                    // "" -> matches no table -> Hibernate does not invalidate any cache region
+                    .addSynchronizedQuerySpace("")
+                    .executeUpdate();
+
+            chunk.forEach(id -> {
+                Person person = PersistenceContexts.getManaged(entityManager, Person.class, id);
+                if (person != null) entityManager.detach(person);
+            });
+        }
+
+        if (deleted > 0) {
+            // now AND after the commit -> see EntityCaches
+            EntityCaches.evictOnCompletion(entityManager, Person.class, ids);
+            QueryCaches.invalidateOnCompletion(entityManager, "person");
+        }
+        return deleted;
     }
 
     /**
@@ -59,6 +108,7 @@ public class PersonJpaRepository {
      *
      * @see Person
      */
+    @ReadOnlyTransactional
     public List<Person> findAll() {
 
         TypedQuery<Person> namedQuery = entityManager.createNamedQuery("find_all", Person.class);
@@ -66,4 +116,21 @@ public class PersonJpaRepository {
 
         return persons;
     }
+
+    /**
+     * Keyset pagination over {@link #findAll()} -> see {@link KeysetPage}
+     *
+     * @param cursor `null` for the first page, otherwise {@link KeysetPage#nextCursor()} of the previous page
+     */
+    @ReadOnlyTransactional
+    public KeysetPage<Person> findPage(String cursor, int size) {
+
+        List<Person> persons = entityManager.createNamedQuery("find_page", Person.class)
+                .setParameter("lastSeenId", (int) KeysetPage.decode(cursor))
+                // 1 extra row -> to know whether there is a next page
+                .setMaxResults(KeysetPage.limit(size))
+                .getResultList();
+
+        return KeysetPage.of(persons, size, Person::getId);
+    }
 }
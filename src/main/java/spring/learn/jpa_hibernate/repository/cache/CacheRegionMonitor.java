@@ -0,0 +1,202 @@
+package spring.learn.jpa_hibernate.repository.cache;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.statistics.StatisticsGateway;
+import org.hibernate.cache.ehcache.internal.EhcacheRegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per region view of the 2nd level cache -> `hibernate.generate_statistics=true` only gives totals in the log.
+ * <p>
+ * Combines 2 sources:
+ * <p> 1. Hibernate statistics -> hits, misses, puts as Hibernate sees them
+ * <p> 2. ehcache -> evictions, expirations, entries per tier, bytes, and the size limits
+ * <p>
+ * Rolling hit ratio: every `cache.stats.sample-interval` the hit / miss counters of each region are sampled.
+ * The ratio is taken between the newest and the oldest sample within `cache.stats.rolling-window`
+ * -> shows what the region does NOW, not the average since startup.
+ * <p>
+ * Served over http by CacheManagementController
+ */
+@Component
+public class CacheRegionMonitor {
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @Value("${cache.stats.sample-interval:PT10S}")
+    Duration sampleInterval;
+
+    @Value("${cache.stats.rolling-window:PT1M}")
+    Duration rollingWindow;
+
+    private SessionFactoryImplementor sessionFactory;
+
+    private EhcacheRegionFactory regionFactory;
+
+    // region -> {hits, misses} samples, oldest first
+    private final Map<String, Deque<long[]>> samples = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        Assert.state(
+                sessionFactory.getCache().getRegionFactory() instanceof EhcacheRegionFactory,
+                "CacheRegionMonitor only works with EhcacheRegionFactory"
+        );
+        regionFactory = (EhcacheRegionFactory) sessionFactory.getCache().getRegionFactory();
+    }
+
+    public List<String> regionNames() {
+        return Arrays.stream(sessionFactory.getStatistics().getSecondLevelCacheRegionNames()).sorted().toList();
+    }
+
+    public List<RegionStats> stats(boolean withBytes) {
+        return regionNames().stream().map(region -> stats(region, withBytes)).toList();
+    }
+
+    /**
+     * @param withBytes also estimate the heap bytes -> ehcache walks the object graph of EVERY entry for that
+     * @throws NoSuchElementException for an unknown region
+     */
+    public RegionStats stats(String region, boolean withBytes) {
+        Ehcache cache = ehcache(region);
+        StatisticsGateway ehcacheStats = cache.getStatistics();
+        CacheRegionStatistics hibernateStats = sessionFactory.getStatistics().getCacheRegionStatistics(region);
+
+        long hits = hibernateStats == null ? 0 : hibernateStats.getHitCount();
+        long misses = hibernateStats == null ? 0 : hibernateStats.getMissCount();
+        long puts = hibernateStats == null ? 0 : hibernateStats.getPutCount();
+
+        return new RegionStats(
+                region,
+                hits,
+                misses,
+                puts,
+                ehcacheStats.cacheEvictedCount(),
+                ehcacheStats.cacheExpiredCount(),
+                ehcacheStats.getLocalHeapSize(),
+                ehcacheStats.getLocalDiskSize(),
+                cache.getCacheConfiguration().getMaxEntriesLocalHeap(),
+                withBytes ? ehcacheStats.getLocalHeapSizeInBytes() : -1,
+                ehcacheStats.getLocalOffHeapSizeInBytes(),
+                ehcacheStats.getLocalDiskSizeInBytes(),
+                ratio(hits, misses),
+                rollingHitRatio(region, hits, misses)
+        );
+    }
+
+    /**
+     * Empties the region -> through Hibernate, so a query region or the timestamps are handled correctly as well
+     */
+    public void evict(String region) {
+        ehcache(region);
+        sessionFactory.getCache().evictRegion(region);
+    }
+
+    public void evictAll() {
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    /**
+     * ehcache applies new limits to a running cache -> a smaller limit evicts the extra entries as new ones come in.
+     * Not saved anywhere -> the next start uses ehcache.xml again.
+     *
+     * @param maxEntriesOnHeap `null` to keep the current limit
+     * @param maxEntriesOnDisk `null` to keep the current limit. only for regions with a disk tier
+     * @param timeToLive       `null` to keep the current ttl. applies to entries put from now on
+     */
+    public RegionStats resize(String region, Long maxEntriesOnHeap, Long maxEntriesOnDisk, Duration timeToLive) {
+        CacheConfiguration config = ehcache(region).getCacheConfiguration();
+
+        // 0 means `unlimited` to ehcache -> never what someone resizing a thrashing region wants
+        if (maxEntriesOnHeap != null) {
+            Assert.isTrue(maxEntriesOnHeap > 0, "maxEntriesOnHeap must be positive");
+            config.setMaxEntriesLocalHeap(maxEntriesOnHeap);
+        }
+        if (maxEntriesOnDisk != null) {
+            Assert.isTrue(maxEntriesOnDisk > 0, "maxEntriesOnDisk must be positive");
+            config.setMaxEntriesLocalDisk(maxEntriesOnDisk);
+        }
+        if (timeToLive != null) {
+            Assert.isTrue(!timeToLive.isNegative() && !timeToLive.isZero(), "timeToLive must be positive");
+            config.setTimeToLiveSeconds(timeToLive.toSeconds());
+        }
+        return stats(region, false);
+    }
+
+    @Scheduled(
+            initialDelayString = "${cache.stats.sample-interval:PT10S}",
+            fixedRateString = "${cache.stats.sample-interval:PT10S}"
+    )
+    public void sample() {
+        Statistics statistics = sessionFactory.getStatistics();
+        // +1 -> the oldest sample is exactly 1 window behind the newest
+        long maxSamples = rollingWindow.toMillis() / Math.max(1, sampleInterval.toMillis()) + 1;
+
+        for (String region : regionNames()) {
+            CacheRegionStatistics regionStats = statistics.getCacheRegionStatistics(region);
+            if (regionStats == null) continue;
+
+            Deque<long[]> regionSamples = samples.computeIfAbsent(region, r -> new ArrayDeque<>());
+            synchronized (regionSamples) {
+                regionSamples.addLast(new long[]{regionStats.getHitCount(), regionStats.getMissCount()});
+                while (regionSamples.size() > maxSamples) regionSamples.removeFirst();
+            }
+        }
+    }
+
+    private double rollingHitRatio(String region, long hits, long misses) {
+        Deque<long[]> regionSamples = samples.get(region);
+        if (regionSamples == null) return -1;
+
+        long windowHits;
+        long windowMisses;
+        synchronized (regionSamples) {
+            if (regionSamples.isEmpty()) return -1;
+            long[] oldest = regionSamples.getFirst();
+
+            // counters since the oldest sample
+            windowHits = hits - oldest[0];
+            windowMisses = misses - oldest[1];
+
+            // counters went backwards -> Statistics.clear() since the oldest sample
+            // -> those samples belong to the old counters, start the window over
+            if (windowHits < 0 || windowMisses < 0) {
+                regionSamples.clear();
+                return -1;
+            }
+        }
+        return windowHits + windowMisses == 0 ? -1 : ratio(windowHits, windowMisses);
+    }
+
+    private Ehcache ehcache(String region) {
+        Ehcache cache = regionFactory.getCacheManager().getEhcache(region);
+        if (cache == null) throw new NoSuchElementException("No cache region " + region);
+        return cache;
+    }
+
+    private static double ratio(long hits, long misses) {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,35 @@
+package spring.learn.jpa_hibernate.repository.cache;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 2nd level cache entries of rows changed behind Hibernate's back -> native update / delete with an empty query space
+ * <p>
+ * Evicting them once, before the commit, is not enough: until the commit, a concurrent reader misses the cache,
+ * loads the OLD committed row and puts it back -> stale until it expires (1 hour for Course).
+ * <p>
+ * Same as Hibernate's own bulk cleanup -> evict now, and once more after the transaction has completed.
+ * Cached queries are separate -> see {@link QueryCaches#invalidateOnCompletion(EntityManager, String...)}
+ */
+public final class EntityCaches {
+
+    private EntityCaches() {
+    }
+
+    public static void evictOnCompletion(EntityManager em, Class<?> entityClass, Collection<?> ids) {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        // copied -> the caller may reuse the collection
+        List<?> evicted = List.copyOf(ids);
+
+        evicted.forEach(id -> cache.evict(entityClass, id));
+        em.unwrap(SessionImplementor.class).getActionQueue().registerProcess(
+                (AfterTransactionCompletionProcess) (success, session) -> evicted.forEach(id -> cache.evict(entityClass, id))
+        );
+    }
+}
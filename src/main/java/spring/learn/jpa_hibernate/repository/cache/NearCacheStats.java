@@ -0,0 +1,36 @@
+package spring.learn.jpa_hibernate.repository.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+
+/**
+ * Counters of an in-memory (Caffeine) cache since startup -> see PersonJdbcDao#getCacheStats()
+ *
+ * @param hits             lookups served from memory
+ * @param misses           lookups which had to load from the database
+ * @param loadFailures     loads which threw -> e.g. no such row, nothing is cached then
+ * @param averageLoadTime  average time of a load -> what a miss costs
+ * @param evictions        entries dropped because of the size limit or expiry -> NOT explicit invalidations
+ * @param size             entries right now (estimate)
+ */
+public record NearCacheStats(long hits, long misses, long loadFailures, Duration averageLoadTime, long evictions, long size) {
+
+    public static NearCacheStats of(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return new NearCacheStats(
+                stats.hitCount(),
+                stats.missCount(),
+                stats.loadFailureCount(),
+                Duration.ofNanos((long) stats.averageLoadPenalty()),
+                stats.evictionCount(),
+                cache.estimatedSize()
+        );
+    }
+
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+}
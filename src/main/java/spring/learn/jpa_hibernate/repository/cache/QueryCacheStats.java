@@ -0,0 +1,17 @@
+package spring.learn.jpa_hibernate.repository.cache;
+
+/**
+ * Query cache counters since startup -> see {@link QueryCaches#statistics}
+ *
+ * @param query  named query, or `*` for all queries
+ * @param hits   results served from the cache -> no round trip
+ * @param misses not cached yet, or a table changed since -> went to the database
+ * @param puts   results written into the cache
+ */
+public record QueryCacheStats(String query, long hits, long misses, long puts) {
+
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,101 @@
+package spring.learn.jpa_hibernate.repository.cache;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.query.Query;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Query cache (`hibernate.cache.use_query_cache=true`) -> result of a query is cached under (query string + parameters)
+ * <p>
+ * It is opt-in, per query -> `@QueryHint(name = QueryHints.HINT_CACHEABLE, value = "true")`
+ * <p>
+ * For an entity result only the IDS are cached. The entities themselves come from the 2nd level cache.
+ * So only cache queries of @Cacheable entities -> otherwise every cache hit loads the entities 1 by 1 (N+1)
+ * <p>
+ * Invalidation is per TABLE, not per row:
+ * <p> 1. every table has a "last updated" timestamp -> `default-update-timestamps-region` in ehcache.xml
+ * <p> 2. Hibernate bumps it whenever it writes to the table -> persist, merge, remove, JPQL bulk update / delete
+ * <p> 3. a cached result older than the timestamp of any of its tables is a miss
+ * <p>
+ * Writes Hibernate does not see (native update with an empty query space, StatelessSession, JdbcTemplate)
+ * have to bump the timestamps by hand -> see {@link #invalidateOnCompletion(EntityManager, String...)}
+ * <p>
+ * <a href="https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#caching-query">https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#caching-query</a>
+ */
+public final class QueryCaches {
+
+    private QueryCaches() {
+    }
+
+    /**
+     * Same as what Hibernate does for a JPQL bulk update: cached queries over these tables
+     * <p> 1. are not used from now on (by anyone) -> pre invalidate
+     * <p> 2. can be cached again once the transaction has ended -> invalidate
+     * <p>
+     * Does NOT touch the entity regions -> evict the changed entities separately
+     *
+     * @param tables table names, not entity names -> "course", "subjects"
+     */
+    public static void invalidateOnCompletion(EntityManager em, String... tables) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        TimestampsCache timestamps = session.getFactory().getCache().getTimestampsCache();
+
+        timestamps.preInvalidate(tables, session);
+        session.getActionQueue().registerProcess(
+                (AfterTransactionCompletionProcess) (success, s) -> timestamps.invalidate(tables, s)
+        );
+    }
+
+    /**
+     * For sessions without an action queue (StatelessSession) -> call it after the commit
+     */
+    public static void invalidate(SharedSessionContractImplementor session, String... tables) {
+        session.getFactory().getCache().getTimestampsCache().invalidate(tables, session);
+    }
+
+    /**
+     * Totals over every cached query -> needs `hibernate.generate_statistics=true`
+     */
+    public static QueryCacheStats statistics(EntityManagerFactory entityManagerFactory) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getStatistics();
+        return new QueryCacheStats(
+                "*",
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount()
+        );
+    }
+
+    /**
+     * Counters of a single named query -> `Course.findById`, `find_all`, ...
+     */
+    public static QueryCacheStats statistics(EntityManagerFactory entityManagerFactory, String namedQuery) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+
+        // statistics are kept per query string, not per name
+        // a short lived EntityManager only to resolve the name -> nothing is queried
+        String queryString;
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            queryString = em.createNamedQuery(namedQuery).unwrap(Query.class).getQueryString();
+        } finally {
+            em.close();
+        }
+        QueryStatistics statistics = sessionFactory.getStatistics().getQueryStatistics(queryString);
+
+        return new QueryCacheStats(
+                namedQuery,
+                statistics.getCacheHitCount(),
+                statistics.getCacheMissCount(),
+                statistics.getCachePutCount()
+        );
+    }
+}
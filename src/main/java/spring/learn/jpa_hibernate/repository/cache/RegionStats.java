@@ -0,0 +1,36 @@
+package spring.learn.jpa_hibernate.repository.cache;
+
+/**
+ * Snapshot of a single 2nd level cache region -> see {@link CacheRegionMonitor}
+ *
+ * @param hits               lookups Hibernate served from this region, since startup
+ * @param misses             lookups which had to go to the database, since startup
+ * @param puts               entries Hibernate put into this region, since startup
+ * @param evictions          entries ehcache pushed out because the region was full -> high = region too small (thrashing)
+ * @param expirations        entries dropped because of timeToLive / timeToIdle
+ * @param entriesOnHeap      entries right now
+ * @param entriesOnDisk      entries right now in the disk tier (see ehcache.xml), 0 for heap only regions
+ * @param maxEntriesOnHeap   limit of the heap tier, 0 = unlimited
+ * @param heapBytes          estimated size of the heap tier, -1 if not asked for -> walking every entry is expensive
+ * @param offHeapBytes       always 0 with open source ehcache 2 -> there is no off heap tier
+ * @param diskBytes          size of the disk tier
+ * @param hitRatio           hits / (hits + misses) since startup
+ * @param rollingHitRatio    the same, over the last `cache.stats.rolling-window` only -> -1 if there were no lookups
+ */
+public record RegionStats(
+        String region,
+        long hits,
+        long misses,
+        long puts,
+        long evictions,
+        long expirations,
+        long entriesOnHeap,
+        long entriesOnDisk,
+        long maxEntriesOnHeap,
+        long heapBytes,
+        long offHeapBytes,
+        long diskBytes,
+        double hitRatio,
+        double rollingHitRatio
+) {
+}
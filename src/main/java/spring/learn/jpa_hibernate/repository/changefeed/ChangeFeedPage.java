@@ -0,0 +1,42 @@
+package spring.learn.jpa_hibernate.repository.changefeed;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * A page of {@link CourseChange}s and the cursor to continue from.
+ * <p>
+ * Unlike KeysetPage, {@link #cursor()} is never null -> when there are no new changes, it is the same cursor that
+ * was passed in. Consumers store it and resume from it later (even after a restart).
+ * <p>
+ * The cursor holds the watermark `(lastUpdated, id)` of the last returned change.
+ */
+public record ChangeFeedPage(List<CourseChange> changes, String cursor) {
+
+    // `null` cursor -> from the very beginning
+    static final Watermark START = new Watermark(LocalDateTime.of(1970, 1, 1, 0, 0, 1), 0L);
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    record Watermark(LocalDateTime lastUpdated, long id) {
+
+        String encode() {
+            String raw = lastUpdated + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Watermark decode(String cursor) {
+            if (cursor == null || cursor.isEmpty()) return START;
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                return new Watermark(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+        }
+    }
+}
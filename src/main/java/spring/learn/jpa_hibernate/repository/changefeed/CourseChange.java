@@ -0,0 +1,13 @@
+package spring.learn.jpa_hibernate.repository.changefeed;
+
+import spring.learn.jpa_hibernate.entity.basics.CourseRating;
+
+import java.time.LocalDateTime;
+
+/**
+ * One changed course, as seen by {@link CourseChangeFeed}.
+ * <p>
+ * `deleted = true` -> the course was soft deleted, consumers should drop it from their copy
+ */
+public record CourseChange(Long id, String name, CourseRating rating, boolean deleted, LocalDateTime lastUpdated) {
+}
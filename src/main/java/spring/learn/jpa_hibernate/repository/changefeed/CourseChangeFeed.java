@@ -0,0 +1,87 @@
+package spring.learn.jpa_hibernate.repository.changefeed;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+import spring.learn.jpa_hibernate.entity.basics.CourseRating;
+import spring.learn.jpa_hibernate.repository.changefeed.ChangeFeedPage.Watermark;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Incremental change feed over `course` -> instead of re-reading the whole table, a consumer (cache, search index, ...)
+ * only reads the courses changed since the last time:
+ * <pre>
+ *     ChangeFeedPage page = changeFeed.changesSince(storedCursor, 500);
+ *     apply(page.changes());
+ *     storedCursor = page.cursor();
+ * </pre>
+ * Changes are ordered by the watermark `(last_updated, id)` -> seeks on `idx_course_last_updated_id` (see course.sql).
+ * `id` breaks ties between courses updated at the same time.
+ * <p>
+ * Soft deleted courses are included (with `deleted = true`) -> hence plain SQL, @Where(is_deleted=false) would hide them.
+ * <p>
+ * NOTE: `last_updated` is set when the update statement runs (at flush), NOT when its transaction commits.
+ * A change only becomes visible at the commit -> with its older timestamp, which can be BEHIND a cursor that was
+ * handed out in the meantime -> it would be missed. So only changes older than `course.change-feed.settle` are
+ * returned: a commit lagging less than that behind its statement is always seen.
+ * <p>
+ * NOTE: a transaction running longer than `settle` between its update and its commit can still be skipped ->
+ * keep writing transactions short, or raise `settle` above the longest one.
+ * <p>
+ * NOTE: rows with a null `last_updated` (created before course.sql gave it a default) are never returned
+ */
+@Repository
+public class CourseChangeFeed {
+
+    private static final RowMapper<CourseChange> CHANGE_ROW_MAPPER = (rs, rowNum) -> {
+        String rating = rs.getString(3);
+        return new CourseChange(
+                rs.getLong(1),
+                rs.getString(2),
+                rating == null ? null : CourseRating.valueOf(rating),
+                rs.getBoolean(4),
+                rs.getObject(5, LocalDateTime.class)
+        );
+    };
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Value("${course.change-feed.settle:PT5S}")
+    Duration settle;
+
+    /**
+     * @param cursor `null` to start from the beginning, otherwise {@link ChangeFeedPage#cursor()} of the previous page
+     */
+    public ChangeFeedPage changesSince(String cursor, int limit) {
+        Assert.isTrue(limit > 0, "limit must be positive");
+
+        Watermark from = Watermark.decode(cursor);
+        Timestamp lastUpdated = Timestamp.valueOf(from.lastUpdated());
+
+        // `(a > x) or (a = x and id > y)` instead of the row comparison `(a, id) > (x, y)` -> always uses the index
+        List<CourseChange> changes = jdbcTemplate.query(
+                "select id, name, rating, is_deleted, last_updated from course " +
+                        "where (last_updated > ? or (last_updated = ? and id > ?)) and last_updated < ? " +
+                        "order by last_updated, id limit ?",
+                CHANGE_ROW_MAPPER,
+                lastUpdated,
+                lastUpdated,
+                from.id(),
+                Timestamp.valueOf(LocalDateTime.now().minus(settle)),
+                limit
+        );
+
+        if (changes.isEmpty()) return new ChangeFeedPage(changes, from.encode());
+
+        CourseChange last = changes.get(changes.size() - 1);
+        return new ChangeFeedPage(changes, new Watermark(last.lastUpdated(), last.id()).encode());
+    }
+}
@@ -0,0 +1,119 @@
+package spring.learn.jpa_hibernate.repository.existence;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size bloom filter over 64 bit hashes -> see ExistenceIndex
+ * <p>
+ * `mightContain() == false` -> the key was DEFINITELY never put.
+ * `mightContain() == true`  -> the key was put, or it is a false positive (about `falsePositiveRate` of the time)
+ * <p>
+ * k bit positions per key from 2 hashes: h1 + i * h2 (Kirsch & Mitzenmacher) -> 1 hash computation per key, not k.
+ * <a href="https://www.eecs.harvard.edu/~michaelm/postscripts/rsa2008.pdf">Less hashing, same performance</a>
+ * <p>
+ * Thread safe without locks -> bits are only ever set, with a CAS per 64 bit word.
+ * Keys cannot be removed -> a deleted key stays a (harmless) false positive until the filter is built again.
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray words;
+
+    private final long bits;
+
+    private final int hashes;
+
+    /**
+     * @param expectedInsertions more insertions than this -> the false positive rate goes up
+     * @param falsePositiveRate  0.01 -> ~9.6 bits and 7 hashes per key
+     */
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        // m = -n * ln(p) / ln(2)^2
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (m + 63) / 64));
+
+        this.words = new AtomicLongArray(wordCount);
+        this.bits = (long) wordCount * 64;
+        // k = m / n * ln(2)
+        this.hashes = (int) Math.max(1, Math.round((double) bits / n * Math.log(2)));
+    }
+
+    void put(long hash) {
+        long h2 = secondHash(hash);
+        for (int i = 0; i < hashes; i++) {
+            setBit(Math.floorMod(hash + i * h2, bits));
+        }
+    }
+
+    boolean mightContain(long hash) {
+        long h2 = secondHash(hash);
+        for (int i = 0; i < hashes; i++) {
+            if (!isSet(Math.floorMod(hash + i * h2, bits))) return false;
+        }
+        return true;
+    }
+
+    long bits() {
+        return bits;
+    }
+
+    int hashes() {
+        return hashes;
+    }
+
+    /**
+     * (set bits / all bits) ^ k -> what the filter answers for a key which was never put, right now
+     */
+    double currentFalsePositiveRate() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) set += Long.bitCount(words.get(i));
+        return Math.pow((double) set / bits, hashes);
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) != 0) return;
+        } while (!words.compareAndSet(word, current, current | mask));
+    }
+
+    private boolean isSet(long index) {
+        return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    // odd -> never 0, so the k positions differ
+    private static long secondHash(long hash) {
+        return mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+    }
+
+    /**
+     * finalizer of MurmurHash3 -> spreads every input bit over the whole 64 bits
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * FNV-1a over the chars, then {@link #mix(long)} -> `String#hashCode()` is only 32 bits
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    static long hash(long value) {
+        return mix(value);
+    }
+}
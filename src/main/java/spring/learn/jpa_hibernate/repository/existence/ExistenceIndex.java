@@ -0,0 +1,405 @@
+package spring.learn.jpa_hibernate.repository.existence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PersistEvent;
+import org.hibernate.event.spi.PersistEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import spring.learn.jpa_hibernate.entity.relationship.Passport;
+import spring.learn.jpa_hibernate.entity.relationship.Student;
+import spring.learn.jpa_hibernate.entity.relationship.Subject;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Answers `does this row exist?` from memory, when the answer is NO -> one bloom filter per {@link Key}
+ * <p> `mightContain() == false` -> the row does not exist. No round trip.
+ * <p> `mightContain() == true`  -> it might -> ask the database (or the 2nd level cache) as before.
+ * <p>
+ * Used for:
+ * <p> 1. negative lookups by id -> `findById(unknown id)` has nothing to put in the 2nd level cache, so it reaches MySQL every time
+ * <p> 2. unique keys checked before the INSERT -> a new passport number / subject name is a definite miss,
+ * only a possible duplicate costs a natural id lookup. see StudentRepository#saveWithPassport
+ * <p>
+ * NOTE: text keys ({@link Key#SUBJECT_NAME}, {@link Key#PASSPORT_NUMBER}) never answer a read -> {@link #normalize(String)}
+ * can be finer than the collation, so a miss there is not proof. For the pre-check that is fine: a missed duplicate
+ * still fails on the unique constraint at flush time.
+ * <p>
+ * Kept up to date by:
+ * <p> 1. a full rebuild at startup and every `existence-index.rebuild-interval` -> sized from the row counts,
+ * and drops the keys of deleted rows (a bloom filter cannot remove a key)
+ * <p> 2. Hibernate event listeners -> every Subject, Student, Passport persisted / inserted / updated through JPA
+ * is added right away, before the commit. A rolled back insert stays a false positive -> harmless.
+ * <p>
+ * NOTE: only correct while every insert goes through JPA in THIS application.
+ * Rows inserted by hand, by another instance or by a StatelessSession (no events) are unknown until the next
+ * rebuild -> `findById` would return `null` for them. So it is OFF by default -> `existence-index.enabled=true`
+ * only where this application is the single writer of these tables.
+ * <p>
+ * NOTE: the unique constraints stay -> 2 transactions checking the same new name at once both see `no`.
+ */
+@Slf4j
+@Component
+public class ExistenceIndex {
+
+    public enum Key {
+        SUBJECT_ID("subjects", "select id from subjects", false),
+        SUBJECT_NAME("subjects", "select name from subjects", true),
+        STUDENT_ID("students", "select id from students", false),
+        PASSPORT_NUMBER("passports", "select number from passports", true);
+
+        private final String table;
+        private final String select;
+        private final boolean text;
+
+        Key(String table, String select, boolean text) {
+            this.table = table;
+            this.select = select;
+            this.text = text;
+        }
+
+        long hash(Object value) {
+            return text
+                    ? BloomFilter.hash(normalize(value.toString()))
+                    : BloomFilter.hash(((Number) value).longValue());
+        }
+    }
+
+    // accents after Normalizer.Form.NFD -> `é` becomes `e` + a combining mark
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Value("${existence-index.enabled:false}")
+    boolean enabled;
+
+    @Value("${existence-index.false-positive-rate:0.01}")
+    double falsePositiveRate;
+
+    // filters are sized for rows * headroom -> inserts until the next rebuild don't push the false positive rate up
+    @Value("${existence-index.headroom:2.0}")
+    double headroom;
+
+    @Value("${existence-index.min-expected:1024}")
+    long minExpected;
+
+    // null until the first rebuild -> everything `might` exist
+    private volatile Filters current;
+
+    // the filters a running rebuild is filling -> keys put meanwhile must go here as well
+    private volatile Filters next;
+
+    // read -> putting a key, write -> switching `current` / `next`
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    // keys put by transactions which have not completed yet -> the rebuild cannot see their rows, see #rebuild()
+    private final Set<TransactionKeys> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final Map<Key, LongAdder> checks = counters();
+
+    private final Map<Key, LongAdder> definiteMisses = counters();
+
+    @PostConstruct
+    void init() {
+        if (!enabled) return;
+
+        // listeners first -> nothing persisted during the first rebuild is lost
+        Listener listener = new Listener();
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        // appended -> they run after Hibernate's own listeners, when the id is already generated
+        registry.appendListeners(EventType.PERSIST, listener);
+        registry.appendListeners(EventType.PERSIST_ONFLUSH, listener);
+        registry.appendListeners(EventType.POST_INSERT, listener);
+        registry.appendListeners(EventType.POST_UPDATE, listener);
+
+        rebuild();
+    }
+
+    /**
+     * @return `false` -> there is definitely no such row
+     */
+    public boolean mightContain(Key key, Object value) {
+        Filters filters = current;
+        if (filters == null || value == null) return true;
+
+        checks.get(key).increment();
+        boolean maybe = filters.get(key).mightContain(key.hash(value));
+        if (!maybe) definiteMisses.get(key).increment();
+        return maybe;
+    }
+
+    /**
+     * Builds new filters from the tables, then swaps them in -> lookups use the old filters meanwhile.
+     * <p>
+     * A key put while this runs goes into the old and the new filters. A key whose transaction is still open
+     * when the tables are read is not in them -> added from `inFlight` when swapping.
+     * <p>
+     * Only an optimization -> on failure the old filters stay (or none, which means `might exist` for everything)
+     */
+    @Scheduled(
+            initialDelayString = "${existence-index.rebuild-interval:PT1H}",
+            fixedDelayString = "${existence-index.rebuild-interval:PT1H}"
+    )
+    public synchronized void rebuild() {
+        if (!enabled) return;
+
+        long start = System.nanoTime();
+        Filters building = new Filters();
+        try {
+            for (Key key : Key.values()) {
+                Long count = jdbcTemplate.queryForObject("select count(*) from " + key.table, Long.class);
+                long expected = Math.max(minExpected, (long) (count * headroom));
+                building.filters.put(key, new BloomFilter(expected, falsePositiveRate));
+            }
+            withWriteLock(() -> next = building);
+
+            for (Key key : Key.values()) {
+                BloomFilter filter = building.get(key);
+                long[] rows = {0};
+                jdbcTemplate.query(key.select, rs -> {
+                    filter.put(key.hash(rs.getObject(1)));
+                    rows[0]++;
+                });
+                building.rows.put(key, rows[0]);
+            }
+
+            withWriteLock(() -> {
+                inFlight.forEach(keys -> keys.pending.forEach(pending -> addTo(building, pending)));
+                current = building;
+                next = null;
+            });
+            log.info("existence index rebuilt in {} -> {}", Duration.ofNanos(System.nanoTime() - start), building.rows);
+        } catch (RuntimeException e) {
+            withWriteLock(() -> next = null);
+            log.warn("existence index -> rebuild failed, keeping the {} filters", current == null ? "(no)" : "old", e);
+        }
+    }
+
+    public List<ExistenceStats> stats() {
+        Filters filters = current;
+        if (filters == null) return List.of();
+
+        return Stream.of(Key.values())
+                .map(key -> new ExistenceStats(
+                        key,
+                        filters.rows.getOrDefault(key, 0L),
+                        filters.get(key).bits(),
+                        filters.get(key).hashes(),
+                        filters.get(key).currentFalsePositiveRate(),
+                        checks.get(key).sum(),
+                        definiteMisses.get(key).sum()
+                ))
+                .toList();
+    }
+
+    /**
+     * Database collations decide which keys are `the same`: the default `utf8mb4_0900_ai_ci` ignores case and accents
+     * -> `History` and `history` hit the same unique index entry, so they must hash the same here.
+     * <p>
+     * Coarser than the collation is always safe (only more false positives), finer is not -> trailing spaces are
+     * dropped as well, for the PAD SPACE collations.
+     * <p>
+     * Still finer than `utf8mb4_0900_ai_ci` in places -> `ø` vs `o`, `æ` vs `ae`, ignorable characters.
+     * That is why text keys are only used before an INSERT, see the class doc.
+     */
+    static String normalize(String value) {
+        String decomposed = Normalizer.normalize(value.stripTrailing(), Normalizer.Form.NFD);
+        // upper, not lower -> `ß` becomes `SS`, like the collation compares it
+        return MARKS.matcher(decomposed).replaceAll("").toUpperCase(Locale.ROOT);
+    }
+
+    private void index(Object entity) {
+        // persisting a proxy -> the row exists already, and reading it would initialize the proxy
+        if (entity instanceof HibernateProxy) return;
+
+        if (entity instanceof Subject subject) {
+            put(Key.SUBJECT_ID, subject.getId());
+            put(Key.SUBJECT_NAME, subject.getName());
+        } else if (entity instanceof Student student) {
+            put(Key.STUDENT_ID, student.getId());
+        } else if (entity instanceof Passport passport) {
+            // mutable natural id -> a renewed number is added on POST_UPDATE, the old one stays a false positive
+            put(Key.PASSPORT_NUMBER, passport.getNumber());
+        }
+    }
+
+    private void put(Key key, Object value) {
+        if (value == null) return;
+        Pending pending = new Pending(key, key.hash(value));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactionKeys().pending.add(pending);
+        }
+
+        withReadLock(() -> {
+            addTo(current, pending);
+            addTo(next, pending);
+        });
+    }
+
+    /**
+     * One per transaction -> the same key is put up to 3 times per row (PERSIST, POST_INSERT, POST_UPDATE),
+     * and a batch puts thousands of rows
+     */
+    private TransactionKeys transactionKeys() {
+        TransactionKeys keys = (TransactionKeys) TransactionSynchronizationManager.getResource(this);
+        if (keys == null) {
+            keys = new TransactionKeys();
+            TransactionSynchronizationManager.bindResource(this, keys);
+            TransactionSynchronizationManager.registerSynchronization(keys);
+            inFlight.add(keys);
+        }
+        return keys;
+    }
+
+    private static void addTo(Filters filters, Pending pending) {
+        if (filters != null) filters.get(pending.key).put(pending.hash);
+    }
+
+    private void withReadLock(Runnable action) {
+        swapLock.readLock().lock();
+        try {
+            action.run();
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private void withWriteLock(Runnable action) {
+        swapLock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private static Map<Key, LongAdder> counters() {
+        Map<Key, LongAdder> counters = new EnumMap<>(Key.class);
+        for (Key key : Key.values()) counters.put(key, new LongAdder());
+        return counters;
+    }
+
+    private static final class Filters {
+
+        private final Map<Key, BloomFilter> filters = new EnumMap<>(Key.class);
+
+        // rows read by the rebuild, per key
+        private final Map<Key, Long> rows = new EnumMap<>(Key.class);
+
+        BloomFilter get(Key key) {
+            return filters.get(key);
+        }
+    }
+
+    /**
+     * a record -> the same key put twice in one transaction is kept once
+     */
+    private record Pending(Key key, long hash) {
+    }
+
+    /**
+     * The keys put by one transaction -> bound as a transaction resource, keyed by this ExistenceIndex
+     * <p>
+     * NOT a record -> compared by identity, 2 transactions putting the same key are 2 entries in `inFlight`
+     */
+    private final class TransactionKeys implements TransactionSynchronization {
+
+        // concurrent -> read by a rebuild on another thread
+        private final Set<Pending> pending = ConcurrentHashMap.newKeySet();
+
+        // REQUIRES_NEW -> the inner transaction binds its own
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(ExistenceIndex.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(ExistenceIndex.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ExistenceIndex.this);
+            withReadLock(() -> {
+                inFlight.remove(this);
+                pending.forEach(p -> addTo(next, p));
+            });
+        }
+    }
+
+    /**
+     * Hibernate event listener -> Hibernate only, JPA's @PostPersist would need to be on every entity
+     */
+    private class Listener implements PersistEventListener, PostInsertEventListener, PostUpdateEventListener {
+
+        @Override
+        public void onPersist(PersistEvent event) {
+            index(event.getObject());
+        }
+
+        @Override
+        public void onPersist(PersistEvent event, Map createdAlready) {
+            index(event.getObject());
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            index(event.getEntity());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            index(event.getEntity());
+        }
+
+        // `false` -> called right after the statement, not after the commit
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            return false;
+        }
+
+        // still abstract in Hibernate 5.6 -> only the misspelled name is deprecated
+        @Override
+        @SuppressWarnings("deprecation")
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return requiresPostCommitHandling(persister);
+        }
+    }
+}
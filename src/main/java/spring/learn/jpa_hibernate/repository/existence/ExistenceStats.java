@@ -0,0 +1,23 @@
+package spring.learn.jpa_hibernate.repository.existence;
+
+/**
+ * Snapshot of one key of the {@link ExistenceIndex}
+ *
+ * @param key                 what is indexed -> `SUBJECT_NAME`, `STUDENT_ID`, ...
+ * @param rows                rows found by the last rebuild
+ * @param bits                size of the filter
+ * @param hashes              bits set per key
+ * @param falsePositiveRate   estimated from the bits set right now -> grows with every insert until the next rebuild
+ * @param checks              lookups asked since startup
+ * @param definiteMisses      lookups answered `no` without a round trip, since startup
+ */
+public record ExistenceStats(
+        ExistenceIndex.Key key,
+        long rows,
+        long bits,
+        int hashes,
+        double falsePositiveRate,
+        long checks,
+        long definiteMisses
+) {
+}
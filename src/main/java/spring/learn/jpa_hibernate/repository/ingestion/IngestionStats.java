@@ -0,0 +1,19 @@
+package spring.learn.jpa_hibernate.repository.ingestion;
+
+import java.time.Duration;
+
+/**
+ * What a single {@link StatelessIngestion} run did
+ */
+public record IngestionStats(String entity, long rows, Duration elapsed) {
+
+    public long rowsPerSecond() {
+        long nanos = Math.max(1, elapsed.toNanos());
+        return rows * 1_000_000_000L / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return entity + ": " + rows + " rows in " + elapsed.toMillis() + " ms (" + rowsPerSecond() + " rows/sec)";
+    }
+}
@@ -0,0 +1,111 @@
+package spring.learn.jpa_hibernate.repository.ingestion;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+import spring.learn.jpa_hibernate.entity.relationship.Review;
+import spring.learn.jpa_hibernate.entity.relationship.Subject;
+import spring.learn.jpa_hibernate.repository.cache.QueryCaches;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Bulk loading of courses and reviews with Hibernate's {@link StatelessSession}.
+ * <p>
+ * Compared to EntityManager (see CourseJpaRepository#saveAll):
+ * <p> 1. no persistence context (1st level cache) -> nothing is kept in memory after an insert, no need for clear()
+ * <p> 2. no dirty checking, no cascades, no lifecycle callbacks (@PrePersist, ...), no 2nd level cache
+ * -> cached queries over the table (and cached Subject#reviews) are invalidated by hand after the commit, see QueryCaches
+ * <p> 3. each `insert()` is queued straight into a jdbc batch of {@link #batchSize}
+ * <p>
+ * Batching only works because Course and Review use pooled ids -> see PooledIds
+ * <p>
+ * NOTE: @CreationTimestamp and @UpdateTimestamp are filled in by the stateful session only.
+ * A stateless insert would leave them null -> so they are set here before the insert.
+ * <p>
+ * Runs in its own Hibernate transaction and its own connection -> not part of any surrounding @Transactional.
+ * <p>
+ * <a href="https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#batch-session-batch-insert">https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#batch-session-batch-insert</a>
+ */
+@Slf4j
+@Component
+public class StatelessIngestion {
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @Value("${ingestion.jdbc-batch-size:100}")
+    int batchSize;
+
+    /**
+     * Reviews must already have their `subject` set -> a reference is enough: `em.getReference(Subject.class, id)`
+     */
+    public IngestionStats ingestReviews(Stream<Review> reviews) {
+        Set<Integer> subjectIds = new HashSet<>();
+
+        IngestionStats stats = ingest("reviews", reviews, review -> subjectIds.add(review.getSubject().getId()));
+
+        // cached Subject#reviews of these subjects are missing the new reviews now
+        org.hibernate.Cache cache = entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class);
+        subjectIds.forEach(id -> cache.evictCollectionData(Subject.class.getName() + ".reviews", id));
+
+        return stats;
+    }
+
+    public IngestionStats ingestCourses(Stream<Course> courses) {
+        return ingest("course", courses, course -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (course.getCreatedOn() == null) course.setCreatedOn(now);
+            course.setLastUpdated(now);
+        });
+    }
+
+    private <T> IngestionStats ingest(String entity, Stream<T> rows, Consumer<T> beforeInsert) {
+
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        long start = System.nanoTime();
+        long inserted = 0;
+
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            session.setJdbcBatchSize(batchSize);
+            Transaction transaction = session.beginTransaction();
+
+            try {
+                Iterator<T> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    T row = iterator.next();
+                    beforeInsert.accept(row);
+                    session.insert(row);
+                    inserted++;
+                }
+
+                // sends the last, partly filled batch as well
+                transaction.commit();
+
+                // `entity` is the table name as well
+                QueryCaches.invalidate((SharedSessionContractImplementor) session, entity);
+
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) transaction.rollback();
+                throw e;
+            }
+        }
+
+        IngestionStats stats = new IngestionStats(entity, inserted, Duration.ofNanos(System.nanoTime() - start));
+        log.info("ingested {}", stats);
+        return stats;
+    }
+}
@@ -0,0 +1,80 @@
+package spring.learn.jpa_hibernate.repository.locking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.OptimisticLockException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Retries with exponential backoff and jitter:
+ * <p> attempt 1 fails -> wait ~initial-backoff, attempt 2 fails -> wait ~2 x initial-backoff, ... up to max-backoff
+ * <p>
+ * Jitter -> each wait is a random value between half and the full backoff. Otherwise 2 writers which collided once
+ * wake up at the same time and collide again.
+ */
+@Slf4j
+@Component
+public class BackoffRetryExecutor implements RetryExecutor {
+
+    @Value("${optimistic-locking.max-attempts:5}")
+    int maxAttempts;
+
+    @Value("${optimistic-locking.initial-backoff:PT0.01S}")
+    Duration initialBackoff;
+
+    @Value("${optimistic-locking.max-backoff:PT0.5S}")
+    Duration maxBackoff;
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    @Override
+    public <T> T execute(String operation, Supplier<T> work) {
+        executions.increment();
+
+        long backoffMillis = initialBackoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return work.get();
+
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                // Spring translates OptimisticLockException into ObjectOptimisticLockingFailureException
+                // but a TransactionTemplate can also let the plain JPA one through
+                conflicts.increment();
+
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn("{} -> optimistic locking conflict, giving up after {} attempts", operation, attempt);
+                    throw e;
+                }
+
+                log.debug("{} -> optimistic locking conflict on attempt {}, retrying", operation, attempt);
+                sleep(ThreadLocalRandom.current().nextLong(backoffMillis / 2, backoffMillis + 1));
+                backoffMillis = Math.min(backoffMillis * 2, maxBackoff.toMillis());
+                retries.increment();
+            }
+        }
+    }
+
+    @Override
+    public RetryStats getStats() {
+        return new RetryStats(executions.sum(), conflicts.sum(), retries.sum(), exhausted.sum());
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+}
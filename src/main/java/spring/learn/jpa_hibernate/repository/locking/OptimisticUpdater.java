@@ -0,0 +1,61 @@
+package spring.learn.jpa_hibernate.repository.locking;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.PersistenceContext;
+import java.util.function.Consumer;
+
+/**
+ * Load - change - save for @Version-ed entities (Course, Subject), retried on a conflict.
+ * <p>
+ * Instead of locking the row for the whole edit (`select ... for update` -> every other writer waits),
+ * each attempt:
+ * <p> 1. loads the entity -> remembers its version
+ * <p> 2. applies the change
+ * <p> 3. commits -> "update ... set ..., version=version+1 where id=? and version=?"
+ * <p>
+ * If another writer committed in between, step 3 matches no row -> the attempt is rolled back and
+ * {@link RetryExecutor} runs all 3 steps again on fresh data.
+ * <p>
+ * NOTE: the change may therefore run more than once -> it must only touch the entity
+ */
+@Component
+public class OptimisticUpdater {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    RetryExecutor retryExecutor;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate attemptTransaction;
+
+    @PostConstruct
+    void init() {
+        attemptTransaction = new TransactionTemplate(transactionManager);
+        // every attempt in a transaction of its own -> a failed attempt cannot spoil the next one
+        attemptTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public <T> T update(Class<T> type, Object id, Consumer<T> change) {
+        return retryExecutor.execute(type.getSimpleName() + "#" + id, () -> attemptTransaction.execute(status -> {
+            T entity = em.find(type, id);
+            if (entity == null) throw new EntityNotFoundException(type.getSimpleName() + " " + id + " not found");
+
+            change.accept(entity);
+            // flush here -> a conflict is thrown inside the attempt, not later at commit
+            em.flush();
+            return entity;
+        }));
+    }
+}
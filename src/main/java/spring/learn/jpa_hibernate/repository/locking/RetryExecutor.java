@@ -0,0 +1,20 @@
+package spring.learn.jpa_hibernate.repository.locking;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs a unit of work again when it fails because of an optimistic locking conflict.
+ * <p>
+ * Pluggable -> {@link BackoffRetryExecutor} is the default bean. To replace it, define another RetryExecutor bean
+ * and mark it `@Primary`.
+ */
+public interface RetryExecutor {
+
+    /**
+     * @param operation name used for logging
+     * @param work      MUST be a complete transaction by itself -> a retry inside a failed transaction cannot succeed
+     */
+    <T> T execute(String operation, Supplier<T> work);
+
+    RetryStats getStats();
+}
@@ -0,0 +1,19 @@
+package spring.learn.jpa_hibernate.repository.locking;
+
+/**
+ * Counters of a {@link RetryExecutor} since startup.
+ *
+ * @param executions calls to {@link RetryExecutor#execute}
+ * @param conflicts  attempts which failed with an optimistic locking conflict
+ * @param retries    attempts started again after a conflict
+ * @param exhausted  executions given up on after the last attempt
+ */
+public record RetryStats(long executions, long conflicts, long retries, long exhausted) {
+
+    /**
+     * conflicts per execution -> 0.0 means writers never collide
+     */
+    public double conflictRate() {
+        return executions == 0 ? 0.0 : (double) conflicts / executions;
+    }
+}
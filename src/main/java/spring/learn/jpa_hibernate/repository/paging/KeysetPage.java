@@ -0,0 +1,71 @@
+package spring.learn.jpa_hibernate.repository.paging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (seek) pagination.
+ * <p>
+ * OFFSET pagination -> "select ... order by id limit 10 offset 100000" -> database still reads and throws away
+ * 100_000 rows. So the deeper the page, the slower the query.
+ * <p>
+ * Keyset pagination -> "select ... where id > :lastSeenId order by id limit 10" -> database seeks directly to
+ * `lastSeenId` through the primary key index. So every page costs the same.
+ * <p>
+ * {@link #nextCursor()} is an opaque token holding the last seen id. Pass it back to get the next page.
+ * It is `null` on the last page.
+ * <p>
+ * <a href="https://use-the-index-luke.com/no-offset">https://use-the-index-luke.com/no-offset</a>
+ */
+public record KeysetPage<T>(List<T> content, String nextCursor) {
+
+    // ids are auto_increment -> they start from 1, so "after 0" is the first page
+    private static final long FIRST_ID = 0L;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Rows a page query has to ask for -> `size + 1`, the extra row is only there to find out whether there is a next page
+     *
+     * @throws IllegalArgumentException for a size of 0 or less -> a page of nothing has no last seen id for the cursor
+     */
+    public static int limit(int size) {
+        if (size <= 0) throw new IllegalArgumentException("Page size must be positive: " + size);
+        return size + 1;
+    }
+
+    /**
+     * @param rows result of a query run with {@link #limit(int)}
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, ? extends Number> idOf) {
+        limit(size);
+        if (rows.size() <= size) return new KeysetPage<>(rows, null);
+
+        List<T> content = rows.subList(0, size);
+        long lastSeenId = idOf.apply(content.get(size - 1)).longValue();
+        return new KeysetPage<>(content, encode(lastSeenId));
+    }
+
+    public static String encode(long lastSeenId) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(Long.toString(lastSeenId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * `null` or empty cursor -> first page
+     */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) return FIRST_ID;
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException as well
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
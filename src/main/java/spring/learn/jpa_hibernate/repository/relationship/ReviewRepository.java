@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import spring.learn.jpa_hibernate.entity.relationship.Review;
+import spring.learn.jpa_hibernate.repository.ReadOnlyTransactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -16,6 +17,7 @@ public class ReviewRepository {
     @PersistenceContext
     private EntityManager em;
 
+    @ReadOnlyTransactional
     public Review findById(int id) {
         Review review = em.find(Review.class, id);
         return review;
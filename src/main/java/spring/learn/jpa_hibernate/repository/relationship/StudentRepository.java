@@ -1,12 +1,17 @@
 package spring.learn.jpa_hibernate.repository.relationship;
 
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import spring.learn.jpa_hibernate.entity.relationship.Passport;
 import spring.learn.jpa_hibernate.entity.relationship.Student;
 import spring.learn.jpa_hibernate.entity.relationship.Subject;
+import spring.learn.jpa_hibernate.repository.ReadOnlyTransactional;
+import spring.learn.jpa_hibernate.repository.existence.ExistenceIndex;
 
+import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.List;
@@ -19,11 +24,51 @@ public class StudentRepository {
     @PersistenceContext
     EntityManager em;
 
+    @Autowired
+    ExistenceIndex existenceIndex;
+
+    @Autowired
+    SubjectRepository subjectRepository;
+
+    @ReadOnlyTransactional
     public Student findById(int id) {
+        // unknown id -> nothing to cache, would reach the database every time. see ExistenceIndex
+        if (!existenceIndex.mightContain(ExistenceIndex.Key.STUDENT_ID, id)) return null;
+
         Student student = em.find(Student.class, id);
         return student;
     }
 
+    /**
+     * Natural id lookups all the way -> no JPQL join over `s.passport.number`
+     * <p> 1. passport number -> passport id : natural id cache of Passport
+     * <p> 2. passport id -> student id      : natural id cache of Student (see Student#passport)
+     * <p> 3. student id -> student          : 2nd level cache
+     * <p>
+     * The passport itself is never loaded -> `getReference()` only gives a proxy.
+     * Loading it would load its student as well: `Passport.student` is the inverse side of a OneToOne, which
+     * Hibernate cannot make lazy and cannot take from the cache -> 1 query every time.
+     *
+     * @return `null` if there is no such passport
+     */
+    @ReadOnlyTransactional
+    public Student findStudentByPassportNumber(String number) {
+        Session session = em.unwrap(Session.class);
+
+        Passport passport = session.bySimpleNaturalId(Passport.class).getReference(number);
+        if (passport == null) return null;
+
+        return session.bySimpleNaturalId(Student.class).load(passport);
+    }
+
+    /**
+     * natural id lookup, see {@link #findStudentByPassportNumber(String)}
+     */
+    @ReadOnlyTransactional
+    public boolean existsByPassportNumber(String number) {
+        return em.unwrap(Session.class).bySimpleNaturalId(Passport.class).getReference(number) != null;
+    }
+
     public Student save(Student student) {
         if (student.getId() == null) em.persist(student);
         else em.merge(student);
@@ -33,9 +78,19 @@ public class StudentRepository {
     /**
      * similar to {@link SubjectRepository#addReviewsToSubject(int, List)}. <p>
      * NOTE: The approach is different.
+     *
+     * @throws EntityExistsException the passport number is taken -> translated to DataIntegrityViolationException,
+     *                               the same as the unique constraint failing on INSERT
      */
     public Student saveWithPassport(Student student, Passport passport) {
 
+        // 0. duplicate number -> found before the INSERT, not by the unique constraint at flush time
+        // a new number is almost always a definite miss -> costs nothing. see ExistenceIndex
+        if (existenceIndex.mightContain(ExistenceIndex.Key.PASSPORT_NUMBER, passport.getNumber())
+                && existsByPassportNumber(passport.getNumber())) {
+            throw new EntityExistsException("Passport number already exists: " + passport.getNumber());
+        }
+
         // As you see in Student.class, it owns the passport.
         // So in order to save a student in database, there should already be a passport saved in `passports` table
 
@@ -70,6 +125,11 @@ public class StudentRepository {
             student.addSubject(subject);
 
             // 2.1 subjects are new -> so first persist them
+            // duplicate name -> see SubjectRepository#save(Subject)
+            if (existenceIndex.mightContain(ExistenceIndex.Key.SUBJECT_NAME, subject.getName())
+                    && subjectRepository.existsByName(subject.getName())) {
+                throw new EntityExistsException("Subject already exists: " + subject.getName());
+            }
             em.persist(subject);
         });
 
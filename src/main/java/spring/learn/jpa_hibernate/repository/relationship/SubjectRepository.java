@@ -1,13 +1,19 @@
 package spring.learn.jpa_hibernate.repository.relationship;
 
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import spring.learn.jpa_hibernate.entity.relationship.Passport;
 import spring.learn.jpa_hibernate.entity.relationship.Review;
 import spring.learn.jpa_hibernate.entity.relationship.Student;
 import spring.learn.jpa_hibernate.entity.relationship.Subject;
+import spring.learn.jpa_hibernate.projection.SubjectSummary;
+import spring.learn.jpa_hibernate.repository.ReadOnlyTransactional;
+import spring.learn.jpa_hibernate.repository.existence.ExistenceIndex;
 
+import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.List;
@@ -20,11 +26,66 @@ public class SubjectRepository {
     @PersistenceContext
     EntityManager em;
 
+    @Autowired
+    ExistenceIndex existenceIndex;
+
+    @ReadOnlyTransactional
     public Subject findById(int id) {
+        // unknown id -> nothing to cache, would reach the database every time. see ExistenceIndex
+        if (!existenceIndex.mightContain(ExistenceIndex.Key.SUBJECT_ID, id)) return null;
+
         Subject subject = em.find(Subject.class, id);
         return subject;
     }
 
+    /**
+     * Natural id lookup -> see Subject#name
+     * <p>
+     * 1st call: "select id from subjects where name=?" + the subject itself (if not in the 2nd level cache)
+     * <p>
+     * afterwards: name -> id from the natural id cache, then the subject from the 2nd level cache -> no round trip
+     *
+     * @return `null` if there is no such subject
+     */
+    @ReadOnlyTransactional
+    public Subject findSubjectByName(String name) {
+        return em.unwrap(Session.class)
+                .bySimpleNaturalId(Subject.class)
+                .load(name);
+    }
+
+    /**
+     * natural id lookup, see {@link #findSubjectByName(String)}
+     */
+    @ReadOnlyTransactional
+    public boolean existsByName(String name) {
+        return findSubjectByName(name) != null;
+    }
+
+    /**
+     * @throws EntityExistsException a new subject with a name which is taken -> found before the INSERT.
+     *                               Translated to DataIntegrityViolationException, like the failing unique constraint
+     */
+    public Subject save(Subject subject) {
+        if (subject.getId() == null) {
+            // a new name is almost always a definite miss -> no round trip. see ExistenceIndex
+            if (existenceIndex.mightContain(ExistenceIndex.Key.SUBJECT_NAME, subject.getName())
+                    && existsByName(subject.getName())) {
+                throw new EntityExistsException("Subject already exists: " + subject.getName());
+            }
+            em.persist(subject);
+        } else em.merge(subject);
+        return subject;
+    }
+
+    /**
+     * Same rows as the `Subject.getAllSubjects` named query, but only id and name -> no managed Subject entities
+     */
+    @ReadOnlyTransactional
+    public List<SubjectSummary> findAllSummaries() {
+        return em.createNamedQuery("Subject.getAllSubjects.summary", SubjectSummary.class).getResultList();
+    }
+
     /**
      * This is a different approach than usual setting !!!
      * <p> see {@link StudentRepository#saveWithPassport(Student, Passport)} for similar OneToOne approach
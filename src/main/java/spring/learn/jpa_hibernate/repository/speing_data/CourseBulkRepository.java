@@ -0,0 +1,19 @@
+package spring.learn.jpa_hibernate.repository.speing_data;
+
+/**
+ * Set based write operations for {@link CourseSpringDataRepository}, implemented in {@link CourseBulkRepositoryImpl}
+ */
+public interface CourseBulkRepository {
+
+    /**
+     * Set based version of {@link CourseSpringDataRepository#deleteByName(String)}.
+     * <p>
+     * deleteByName loads every matching course and then removes them one by one -> 1 @SQLDelete update per course.
+     * This runs a single "update course set is_deleted=true where name=?" instead.
+     * <p>
+     * Only the matching courses are evicted from the 2nd level cache, not the whole Course region.
+     *
+     * @return number of soft deleted rows
+     */
+    int softDeleteAllByName(String name);
+}
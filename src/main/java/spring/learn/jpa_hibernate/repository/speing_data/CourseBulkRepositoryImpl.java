@@ -0,0 +1,62 @@
+package spring.learn.jpa_hibernate.repository.speing_data;
+
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.annotation.Transactional;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+import spring.learn.jpa_hibernate.repository.basics.PersistenceContexts;
+import spring.learn.jpa_hibernate.repository.cache.EntityCaches;
+import spring.learn.jpa_hibernate.repository.cache.QueryCaches;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+class CourseBulkRepositoryImpl implements CourseBulkRepository {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Override
+    @Transactional
+    public int softDeleteAllByName(String name) {
+
+        // send pending changes first -> they could touch the rows which are about to be deleted
+        em.flush();
+
+        int deleted = em.createNativeQuery("update course set is_deleted=true, version=version+1 where is_deleted=false and name = :name")
+                .setParameter("name", name)
+                .unwrap(NativeQuery.class)
+                // a native update invalidates EVERY cache region by default
+                // "" -> matches no table -> nothing is invalidated, matching courses are evicted below by hand
+                .addSynchronizedQuerySpace("")
+                .executeUpdate();
+
+        // ids are only needed to evict the right cache entries -> 1 cheap query, not 1 query per course
+        // selected AFTER the update, by the update's own predicate -> a transaction always sees its own changes, so
+        // every row the update touched is found. Selected before, a course inserted / renamed in between would be
+        // soft deleted but stay in the cache. Native -> @Where(is_deleted=false) of Course would hide them all.
+        // courses deleted earlier are evicted again -> harmless
+        @SuppressWarnings("unchecked")
+        List<Long> ids = ((List<Number>) em.createNativeQuery("select id from course where is_deleted=true and name = :name")
+                .setParameter("name", name)
+                .getResultList())
+                .stream().map(Number::longValue).toList();
+
+        // now AND after the commit -> until then a reader can still cache the live row again, see EntityCaches
+        EntityCaches.evictOnCompletion(em, Course.class, ids);
+
+        // the empty query space keeps cached queries over `course` as well -> those must go
+        QueryCaches.invalidateOnCompletion(em, "course");
+
+        ids.forEach(id -> {
+            // loaded courses would still look alive -> same as @PreRemove on Course, then stop tracking them
+            Course course = PersistenceContexts.getManaged(em, Course.class, id);
+            if (course != null) {
+                course.preRemove();
+                em.detach(course);
+            }
+        });
+
+        return deleted;
+    }
+}
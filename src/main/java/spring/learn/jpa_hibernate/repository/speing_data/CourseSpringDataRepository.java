@@ -1,13 +1,23 @@
 package spring.learn.jpa_hibernate.repository.speing_data;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import spring.learn.jpa_hibernate.entity.basics.Course;
+import spring.learn.jpa_hibernate.projection.CourseSummary;
+import spring.learn.jpa_hibernate.repository.paging.KeysetPage;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.stream.Stream;
 
 // we pass in the `entity` for which the repository to act upon and `type of ID`
-public interface CourseSpringDataRepository extends JpaRepository<Course, Long> {
+// CourseStreamingRepository, CourseBulkRepository -> custom methods, implemented in their *Impl classes
+public interface CourseSpringDataRepository extends JpaRepository<Course, Long>, CourseStreamingRepository, CourseBulkRepository {
 
     // `JpaRepository` extends `CrudRepository`
     // Both are similar, and I can use both interchangeably
@@ -17,16 +27,40 @@ public interface CourseSpringDataRepository extends JpaRepository<Course, Long>
     // -> The actual implementation will be automatically generated
     List<Course> findByNameAndId(String name, Long id);
 
+    // opt-in query cache -> the same name again is served from memory until the course table changes. see QueryCaches
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
     List<Course> findByName(String name);
 
     List<Course> countByName(String name);
 
     List<Course> findByNameOrderByIdDesc(String name);
 
+    // loads every matching course, then 1 soft delete per course -> for many rows use softDeleteAllByName(String)
     List<Course> deleteByName(String name);
 
+    // projections -> same rows as findByName / findByNameOrderByIdDesc, but mapped straight into a record
+    // only id, name and rating are selected, and nothing ends up in the persistence context. see CourseSummary
+    @Query("select new spring.learn.jpa_hibernate.projection.CourseSummary(c.id, c.name, c.rating) from Course c where c.name = :name")
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
+    List<CourseSummary> findSummariesByName(@Param("name") String name);
+
+    @Query("select new spring.learn.jpa_hibernate.projection.CourseSummary(c.id, c.name, c.rating) from Course c where c.name = :name order by c.id desc")
+    List<CourseSummary> findSummariesByNameOrderByIdDesc(@Param("name") String name);
+
+    // Stream instead of List -> rows are read from a cursor while the stream is consumed, not buffered up front
+    // must be called inside a transaction and the stream must be closed -> try (Stream<Course> s = ...) { }
+    // fetch size -> rows per round trip. See also streamAll(int, int) which detaches processed courses as well
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<Course> streamByName(String name);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<Course> streamAllByOrderByIdAsc();
+
     // I can have custom methods with custom queries set up
 
+    // NOTE: a leading `%` cannot use an index -> both queries below scan the whole table
+    // see findByNameSuffix(String) and findByNameSubstring(String) for indexed versions
+
     // JPQL query
     @Query("select c from Course c where c.name like '%Mon'")
     List<Course> courseStartsWith_Com();
@@ -34,4 +68,74 @@ public interface CourseSpringDataRepository extends JpaRepository<Course, Long>
     // Native query
     @Query(value = "select * from course where name like '%Mon'", nativeQuery = true)
     List<Course> courseStartsWith_Com_native();
+
+    // Keyset pagination -> see KeysetPage
+    // Pageable is only used as a `limit` here -> page number is always 0, so there is no offset and no count query
+    // @Where(is_deleted=false) on Course is applied to derived queries as well -> soft deleted rows are skipped
+    List<Course> findByIdGreaterThanOrderByIdAsc(Long lastSeenId, Pageable limit);
+
+    /**
+     * @param cursor `null` for the first page, otherwise {@link KeysetPage#nextCursor()} of the previous page
+     */
+    default KeysetPage<Course> findPage(String cursor, int size) {
+        // 1 extra row -> to know whether there is a next page
+        List<Course> courses = findByIdGreaterThanOrderByIdAsc(KeysetPage.decode(cursor), PageRequest.ofSize(KeysetPage.limit(size)));
+        return KeysetPage.of(courses, size, Course::getId);
+    }
+
+    // Name search -> see course.sql for the `name_reversed` column and the ngram fulltext index
+    // native queries -> @Where(is_deleted=false) does not apply, so it is added by hand
+
+    // MySQL default for `ngram_token_size`
+    int NGRAM_TOKEN_SIZE = 2;
+
+    @Query(value = "select * from course where is_deleted=false and name_reversed like :reversedPattern", nativeQuery = true)
+    List<Course> findByReversedNameLike(@Param("reversedPattern") String reversedPattern);
+
+    @Query(value = "select * from course where is_deleted=false and match(name) against (:phrase in boolean mode) and name like :pattern", nativeQuery = true)
+    List<Course> findByNameFullTextAndLike(@Param("phrase") String phrase, @Param("pattern") String pattern);
+
+    @Query(value = "select * from course where is_deleted=false and name like :pattern", nativeQuery = true)
+    List<Course> findByNameLike(@Param("pattern") String pattern);
+
+    /**
+     * Same as `name like '%suffix'` but seeks on the index of `name_reversed`:
+     * <p> "Mon" -> `name_reversed like 'noM%'`
+     */
+    default List<Course> findByNameSuffix(String suffix) {
+        return findByReversedNameLike(escapeLike(new StringBuilder(suffix).reverse().toString()) + "%");
+    }
+
+    /**
+     * Same rows as `name like '%term%'`.
+     * <p>
+     * The ngram fulltext index narrows down the rows first, then `like` removes false positives
+     * (ngram matches the tokens, not the exact character sequence).
+     * <p>
+     * Falls back to a plain `like` (a scan) whenever the index could give a different answer:
+     * <p> 1. a 1 character term -> ngram tokens are 2 characters, nothing to look up
+     * <p> 2. a term with `"` -> it ends the phrase of the boolean mode search, so the index cannot look for it
+     * <p> 3. inside a read-write transaction -> InnoDB FULLTEXT does not see rows inserted / renamed by the
+     * transaction itself until it commits, `like` does
+     * <p>
+     * NOTE: the index is created with stopwords off (see course.sql) -> otherwise "is", "in", "to", ... and every
+     * longer term containing one would find nothing
+     */
+    default List<Course> findByNameSubstring(String term) {
+        String pattern = "%" + escapeLike(term) + "%";
+        if (term.length() < NGRAM_TOKEN_SIZE || term.contains("\"")) return findByNameLike(pattern);
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return findByNameLike(pattern);
+        }
+
+        // "..." -> phrase search: all ngrams of the term, next to each other
+        return findByNameFullTextAndLike("\"" + term + "\"", pattern);
+    }
+
+    // `%` and `_` in user input are wildcards for like -> escape them (MySQL default escape character is `\`)
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 }
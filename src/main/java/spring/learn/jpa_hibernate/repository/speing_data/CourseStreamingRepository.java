@@ -0,0 +1,28 @@
+package spring.learn.jpa_hibernate.repository.speing_data;
+
+import spring.learn.jpa_hibernate.entity.basics.Course;
+
+import java.util.stream.Stream;
+
+/**
+ * Custom methods for {@link CourseSpringDataRepository} which cannot be derived from a method name.
+ * <p>
+ * Spring Data picks up the implementation by name -> {@link CourseStreamingRepositoryImpl}
+ * <p>
+ * <a href="https://docs.spring.io/spring-data/jpa/docs/current/reference/html/#repositories.custom-implementations">https://docs.spring.io/spring-data/jpa/docs/current/reference/html/#repositories.custom-implementations</a>
+ */
+public interface CourseStreamingRepository {
+
+    /**
+     * Walks the whole `course` table (soft deleted rows excluded) ordered by id, in constant memory.
+     * <p>
+     * MUST be called inside a transaction and the stream MUST be closed:
+     * <pre>
+     *     try (Stream&lt;Course&gt; courses = repository.streamAll(1_000, 1_000)) { ... }
+     * </pre>
+     *
+     * @param fetchSize   rows per round trip of the server-side cursor
+     * @param detachEvery already returned courses are detached from the persistence context after this many rows
+     */
+    Stream<Course> streamAll(int fetchSize, int detachEvery);
+}
@@ -0,0 +1,77 @@
+package spring.learn.jpa_hibernate.repository.speing_data;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A Stream returned by a Spring Data finder is backed by Hibernate's {@link ScrollableResults} as well.
+ * But every entity it returns stays in the persistence context until the transaction ends ->
+ * walking a big table still fills the memory up.
+ * <p>
+ * Here, courses which are already handed out are detached in groups -> the persistence context never holds
+ * more than `detachEvery` courses.
+ */
+class CourseStreamingRepositoryImpl implements CourseStreamingRepository {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Override
+    public Stream<Course> streamAll(int fetchSize, int detachEvery) {
+        Assert.isTrue(fetchSize > 0 && detachEvery > 0, "fetchSize and detachEvery must be positive");
+
+        // same check as Spring Data does for its own Stream finders
+        // without a transaction the connection (and the cursor) would be closed before the stream is read
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new InvalidDataAccessApiUsageException("streamAll() must be called inside a transaction");
+        }
+
+        ScrollableResults results = em.createQuery("select c from Course c order by c.id", Course.class)
+                .unwrap(Query.class)
+                .setFetchSize(fetchSize)
+                // read-only -> no snapshots for dirty checking
+                .setReadOnly(true)
+                // do not flood the 2nd level cache with a full table scan
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+
+        Spliterator<Course> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            private final List<Course> handedOut = new ArrayList<>(detachEvery);
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Course> action) {
+                if (!results.next()) return false;
+
+                // the caller is done with the previous courses once it asks for the next one
+                if (handedOut.size() == detachEvery) {
+                    handedOut.forEach(em::detach);
+                    handedOut.clear();
+                }
+
+                Course course = (Course) results.get(0);
+                handedOut.add(course);
+                action.accept(course);
+                return true;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(results::close);
+    }
+}
@@ -1,17 +1,53 @@
 use spring_jpa;
 
 drop table if exists course;
+# reset together with `course` -> ids start over, archived rows would collide with them on the next archival run
+drop table if exists course_archive;
+# the default InnoDB stopword list ("a", "is", "in", "on", "to", ...) would drop every ngram token CONTAINING a stopword
+# -> `History` is never found for "is" or "to". Read when the fulltext index is created, so it must be off for
+# this statement (and for any later `alter table ... rebuild` / `optimize table` of `course`)
+# https://dev.mysql.com/doc/refman/8.0/en/fulltext-search-ngram.html#fulltext-search-ngram-stopwords
+set session innodb_ft_enable_stopword = OFF;
 create table course
 (
     id           int          not null auto_increment,
     name         varchar(255) not null,
     primary key (id),
     is_deleted   boolean      not null default false,
+    version      bigint       not null default 0,
     created_on   timestamp             default now(),
-    last_updated timestamp on update now(),
+    last_updated timestamp             default now() on update now(),
     prefix       varchar(10),
     number       varchar(10),
-    rating       varchar(10)
+    rating       varchar(10),
+    # maintained by MySQL itself -> suffix search `name like '%Mon'` becomes prefix search `name_reversed like 'noM%'`
+    # and a prefix search can seek on an index. Not mapped in Course -> only used by native queries
+    name_reversed varchar(255) generated always as (reverse(name)) stored,
+    index idx_course_name_reversed (name_reversed),
+    # ngram -> splits name into 2 character tokens -> substring search `name like '%om%'` can use an index
+    # https://dev.mysql.com/doc/refman/8.0/en/fulltext-search-ngram.html
+    fulltext index ft_course_name (name) with parser ngram,
+    # change feed watermark -> see CourseChangeFeed
+    index idx_course_last_updated_id (last_updated, id),
+    # archival -> `is_deleted=true and last_updated < ? order by last_updated, id` is a range over deleted rows only.
+    # with idx_course_last_updated_id alone, `for update` would lock every OLD row, live courses included
+    index idx_course_deleted_last_updated_id (is_deleted, last_updated, id)
+);
+
+# soft deleted courses are moved here by CourseArchivalJob -> keeps `course` small
+create table course_archive
+(
+    id           int          not null,
+    name         varchar(255) not null,
+    is_deleted   boolean      not null,
+    version      bigint       not null,
+    created_on   timestamp    null,
+    last_updated timestamp    null,
+    prefix       varchar(10),
+    number       varchar(10),
+    rating       varchar(10),
+    archived_on  timestamp    not null default now(),
+    primary key (id)
 );
 
 insert into course(name)
@@ -0,0 +1,35 @@
+create database if not exists spring_jpa;
+use spring_jpa;
+
+# backing table for pooled id generation -> see PooledIds.java
+# one row per entity table, acting like a sequence
+create table if not exists id_generators
+(
+    sequence_name varchar(255) not null,
+    next_val      bigint       not null,
+    primary key (sequence_name)
+);
+
+# run AFTER course.sql and relationship.sql
+# pooled-lo -> next_val is the first free id, so it must be ahead of the rows already in the table
+delete from id_generators where sequence_name in ('course', 'subjects', 'reviews');
+
+insert into id_generators(sequence_name, next_val)
+select 'course', coalesce(max(id), 0) + 1 from course
+union all
+select 'subjects', coalesce(max(id), 0) + 1 from subjects
+union all
+select 'reviews', coalesce(max(id), 0) + 1 from reviews;
+
+# ids of these tables come from id_generators only -> no more `auto_increment`.
+# otherwise a plain `insert into course(name) ...` continues from max(id), which can be an id inside a block
+# Hibernate has already reserved -> duplicate key later, on a perfectly valid persist.
+# now such an insert fails right away: "Field 'id' doesn't have a default value"
+# foreign_key_checks off -> subjects.id is referenced by reviews and subject_student, type stays the same
+SET FOREIGN_KEY_CHECKS = 0;
+alter table course modify id int not null;
+alter table subjects modify id int not null;
+alter table reviews modify id int not null;
+SET FOREIGN_KEY_CHECKS = 1;
+
+select * from id_generators;
@@ -5,8 +5,9 @@ drop table if exists subjects, students, passports, reviews, subject_student;
 
 create table subjects
 (
-    id   int auto_increment,
-    name varchar(100) not null unique,
+    id      int auto_increment,
+    name    varchar(100) not null unique,
+    version int          not null default 0,
     primary key (id)
 );
 
@@ -0,0 +1,44 @@
+package spring.learn.jpa_hibernate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * default settings -> `cache.management.write-enabled=false`
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = JpaHibernateApplication.class)
+@AutoConfigureMockMvc
+class CacheManagementControllerReadOnlyTests {
+
+    private static final String COURSE_REGION = Course.class.getName();
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void writes_forbiddenByDefault() throws Exception {
+        mockMvc.perform(delete("/management/caches"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/management/caches/{region}", COURSE_REGION))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(put("/management/caches/{region}", COURSE_REGION).param("maxEntriesOnHeap", "5"))
+                .andExpect(status().isForbidden());
+
+        // reads stay open
+        mockMvc.perform(get("/management/caches/{region}", COURSE_REGION))
+                .andExpect(status().isOk());
+    }
+}
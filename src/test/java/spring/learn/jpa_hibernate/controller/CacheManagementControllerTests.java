@@ -0,0 +1,97 @@
+package spring.learn.jpa_hibernate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+import spring.learn.jpa_hibernate.repository.basics.CourseJpaRepository;
+import spring.learn.jpa_hibernate.repository.cache.CacheRegionMonitor;
+import spring.learn.jpa_hibernate.repository.speing_data.CourseSpringDataRepository;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Slf4j
+@ExtendWith(SpringExtension.class)
+// DELETE / PUT are off by default -> see CacheManagementControllerReadOnlyTests
+@SpringBootTest(classes = JpaHibernateApplication.class, properties = "cache.management.write-enabled=true")
+@AutoConfigureMockMvc
+class CacheManagementControllerTests {
+
+    private static final String COURSE_REGION = Course.class.getName();
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    CacheRegionMonitor cacheRegionMonitor;
+
+    @Autowired
+    CourseJpaRepository courseRepository;
+
+    @Autowired
+    CourseSpringDataRepository courseSpringDataRepository;
+
+    @Test
+    void all_listsEveryRegion() throws Exception {
+        mockMvc.perform(get("/management/caches"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].region", hasItem(COURSE_REGION)));
+    }
+
+    @Test
+    void one_countsHits() throws Exception {
+        long id = courseSpringDataRepository.findAll().get(0).getId();
+        courseRepository.findById(id);
+        courseRepository.findById(id);
+        // samples taken by hand -> the scheduler runs only every `cache.stats.sample-interval`
+        cacheRegionMonitor.sample();
+
+        String body = mockMvc.perform(get("/management/caches/{region}", COURSE_REGION).param("bytes", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits", greaterThan(0)))
+                .andReturn().getResponse().getContentAsString();
+
+        log.info("course region -> {}", body);
+    }
+
+    @Test
+    void resize_thenEvict() throws Exception {
+        long current = cacheRegionMonitor.stats(COURSE_REGION, false).maxEntriesOnHeap();
+
+        try {
+            mockMvc.perform(put("/management/caches/{region}", COURSE_REGION).param("maxEntriesOnHeap", "5"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.maxEntriesOnHeap").value(5));
+        } finally {
+            cacheRegionMonitor.resize(COURSE_REGION, current, null, null);
+        }
+
+        courseSpringDataRepository.findAll().forEach(course -> courseRepository.findById(course.getId()));
+
+        mockMvc.perform(delete("/management/caches/{region}", COURSE_REGION))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/management/caches/{region}", COURSE_REGION))
+                .andExpect(jsonPath("$.entriesOnHeap").value(0));
+    }
+
+    @Test
+    void errors() throws Exception {
+        mockMvc.perform(get("/management/caches/{region}", "no.such.Region"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(put("/management/caches/{region}", COURSE_REGION).param("maxEntriesOnHeap", "0"))
+                .andExpect(status().isBadRequest());
+    }
+}
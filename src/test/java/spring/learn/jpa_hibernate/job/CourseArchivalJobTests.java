@@ -0,0 +1,59 @@
+package spring.learn.jpa_hibernate.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+import spring.learn.jpa_hibernate.repository.basics.CourseJpaRepository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+        classes = JpaHibernateApplication.class,
+        // the job is off by default. initial-delay -> so the scheduler does not run it in the middle of the test
+        properties = {
+                "course.archival.enabled=true", "course.archival.initial-delay=PT1H",
+                "course.archival.retention=P1D", "course.archival.batch-size=2", "course.archival.pause=PT0S"
+        }
+)
+class CourseArchivalJobTests {
+
+    @Autowired
+    CourseArchivalJob archivalJob;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    CourseJpaRepository courseRepository;
+
+    // NOTE: the job commits on its own -> these rows are really moved
+    @Test
+    void archive_movesOldSoftDeletedCourses() {
+        // saved through JPA -> Course ids come from the pooled generator, a plain sql insert could take one of them
+        for (int i = 0; i < 5; i++) {
+            Course course = courseRepository.save(new Course("Old " + i));
+            jdbcTemplate.update("update course set is_deleted=true, last_updated=now() - interval 2 day where id=?", course.getId());
+        }
+        Course recent = courseRepository.save(new Course("Recent"));
+        jdbcTemplate.update("update course set is_deleted=true where id=?", recent.getId());
+
+        ArchivalStats stats = archivalJob.archive();
+        log.info("{}", stats);
+
+        assertTrue(stats.rowsMoved() >= 5);
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from course where is_deleted=true and last_updated < now() - interval 1 day", Integer.class));
+        assertTrue(jdbcTemplate.queryForObject("select count(*) from course_archive where name like 'Old %'", Integer.class) >= 5);
+        // still inside the retention window -> stays
+        assertTrue(jdbcTemplate.queryForObject("select count(*) from course where name='Recent'", Integer.class) > 0);
+    }
+}
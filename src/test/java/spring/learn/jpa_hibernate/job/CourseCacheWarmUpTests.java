@@ -0,0 +1,73 @@
+package spring.learn.jpa_hibernate.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(
+        classes = JpaHibernateApplication.class,
+        // warm-up is off by default. NOTE: it already ran once on startup of this context -> see JpaHibernateApplication
+        properties = {
+                "course.cache-warm-up.enabled=true",
+                "course.cache-warm-up.ids-file=${java.io.tmpdir}/jpa_hibernate-hot-courses-test.txt",
+                "course.cache-warm-up.min-id=1",
+                "course.cache-warm-up.max-id=100000",
+                "course.cache-warm-up.chunk-size=2",
+                "course.cache-warm-up.threads=3"
+        }
+)
+class CourseCacheWarmUpTests {
+
+    @Autowired
+    CourseCacheWarmUp warmUp;
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void warmUp_loadsHotCoursesIntoTheCache() {
+        Cache cache = entityManagerFactory.getCache();
+        cache.evict(Course.class);
+
+        WarmUpStats stats = warmUp.warmUp();
+        log.info("{}", stats);
+
+        assertTrue(stats.loaded() > 0);
+        assertEquals((stats.requested() + 1) / 2, stats.chunks());
+
+        List<Long> cached = warmUp.hotIds().stream().filter(id -> cache.contains(Course.class, id)).toList();
+        assertEquals(stats.loaded(), cached.size());
+    }
+
+    @Test
+    void saveHotIds_areWarmedUpFirstNextTime() throws Exception {
+        warmUp.warmUp();
+        warmUp.saveHotIds();
+
+        Path file = Path.of(warmUp.idsFile);
+        List<Long> saved = Files.readAllLines(file).stream().map(Long::valueOf).toList();
+        assertFalse(saved.isEmpty());
+
+        // saved ids come before every other source
+        assertEquals(saved, warmUp.hotIds().subList(0, saved.size()));
+        Files.delete(file);
+    }
+}
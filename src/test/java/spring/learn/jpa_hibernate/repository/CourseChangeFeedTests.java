@@ -0,0 +1,62 @@
+package spring.learn.jpa_hibernate.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+import spring.learn.jpa_hibernate.repository.basics.CourseJpaRepository;
+import spring.learn.jpa_hibernate.repository.changefeed.ChangeFeedPage;
+import spring.learn.jpa_hibernate.repository.changefeed.CourseChange;
+import spring.learn.jpa_hibernate.repository.changefeed.CourseChangeFeed;
+import spring.learn.jpa_hibernate.repository.speing_data.CourseSpringDataRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@ExtendWith(SpringExtension.class)
+// settle=0 -> changes are visible right away. Fine for a single threaded test, not for production
+@SpringBootTest(classes = JpaHibernateApplication.class, properties = "course.change-feed.settle=PT0S")
+class CourseChangeFeedTests {
+
+    @Autowired
+    CourseChangeFeed changeFeed;
+
+    @Autowired
+    CourseJpaRepository courseRepository;
+
+    @Autowired
+    CourseSpringDataRepository springDataRepository;
+
+    @Test
+    void resumeFromCursor_seesSoftDelete() throws InterruptedException {
+
+        Course course = courseRepository.save(new Course("Change feed"));
+
+        // catch up with everything there is
+        String cursor = null;
+        ChangeFeedPage page;
+        do {
+            page = changeFeed.changesSince(cursor, 100);
+            cursor = page.cursor();
+        } while (!page.isEmpty());
+
+        // last_updated has second precision -> make sure the delete gets a later timestamp than the cursor
+        Thread.sleep(1_100);
+        springDataRepository.deleteById(course.getId());
+
+        List<CourseChange> changes = new ArrayList<>();
+        for (page = changeFeed.changesSince(cursor, 100); !page.isEmpty(); page = changeFeed.changesSince(page.cursor(), 100)) {
+            changes.addAll(page.changes());
+        }
+
+        log.info("changes since cursor = {}", changes);
+        assertTrue(changes.stream().anyMatch(change -> change.id().equals(course.getId()) && change.deleted()));
+    }
+}
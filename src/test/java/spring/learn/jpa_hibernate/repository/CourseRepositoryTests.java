@@ -4,6 +4,14 @@ package spring.learn.jpa_hibernate.repository;
 import static org.junit.jupiter.api.Assertions.*;
 
 import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.PersistenceConfiguration;
+import net.sf.ehcache.statistics.StatisticsGateway;
+import org.hibernate.Session;
+import org.hibernate.cache.ehcache.internal.EhcacheRegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,7 +19,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import spring.learn.jpa_hibernate.JpaHibernateApplication;
 import spring.learn.jpa_hibernate.entity.basics.Course;
 import spring.learn.jpa_hibernate.entity.basics.CourseCode;
@@ -19,9 +29,13 @@ import spring.learn.jpa_hibernate.repository.basics.CourseJpaRepository;
 import spring.learn.jpa_hibernate.repository.speing_data.CourseSpringDataRepository;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
 import javax.persistence.Query;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
 @Slf4j
 @ExtendWith(SpringExtension.class)
@@ -34,9 +48,15 @@ class CourseRepositoryTests {
     @Autowired
     CourseSpringDataRepository courseSpringDataRepository;
 
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
     @PersistenceContext
     EntityManager em;
 
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
     @Test
     void find() {
         Course course = courseRepository.findById(1);
@@ -56,6 +76,81 @@ class CourseRepositoryTests {
     }
 
 
+    @Test
+    @Transactional
+    void findByIds() {
+        // 1 is loaded first -> it is served from the persistence context, only the rest is queried
+        Course first = courseRepository.findById(1);
+
+        List<Course> courses = courseRepository.findByIds(List.of(2L, 1L, 2L, 3L, 999_999L));
+
+        assertEquals(List.of(2L, 1L, 3L), courses.stream().map(Course::getId).toList());
+        assertSame(first, courses.get(1));
+    }
+
+    @Test
+    @Transactional
+    void saveAll_keepsPersistenceContextSmall() {
+        long saved = courseRepository.saveAll(IntStream.range(0, 1_000).mapToObj(i -> new Course("Bulk " + i)));
+
+        assertEquals(1_000, saved);
+        // cleared after the last chunk -> nothing left to dirty check
+        assertEquals(0, em.unwrap(Session.class).getStatistics().getEntityCount());
+    }
+
+    /**
+     * Read-only transaction (see ReadOnlyTransactional) -> loaded courses are read-only, no snapshots are kept and
+     * flushing does not dirty check them -> a changed course is NOT written
+     */
+    @Test
+    void readOnly_changesAreNotFlushed() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getStatistics();
+        long updates = statistics.getEntityUpdateCount();
+
+        String name = readOnly.execute(status -> {
+            Session session = em.unwrap(Session.class);
+            assertTrue(session.isDefaultReadOnly());
+
+            Course course = em.find(Course.class, 1L);
+            assertTrue(session.isReadOnly(course));
+
+            String original = course.getName();
+            course.setName(original + " (changed)");
+            em.flush();
+            return original;
+        });
+
+        assertEquals(updates, statistics.getEntityUpdateCount());
+        em.getEntityManagerFactory().getCache().evict(Course.class, 1L);
+        assertEquals(name, courseRepository.findById(1).getName());
+    }
+
+    /**
+     * Course region is configured in ehcache.xml -> not the failsafe defaults
+     */
+    @Test
+    void courseRegion_boundedHeapWithDiskTier() {
+        EhcacheRegionFactory regionFactory = (EhcacheRegionFactory) em.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getCache()
+                .getRegionFactory();
+
+        Ehcache region = regionFactory.getCacheManager().getEhcache(Course.class.getName());
+        CacheConfiguration config = region.getCacheConfiguration();
+
+        assertEquals(10_000, config.getMaxEntriesLocalHeap());
+        assertEquals(PersistenceConfiguration.Strategy.LOCALTEMPSWAP, config.getPersistenceConfiguration().getStrategy());
+        assertEquals(3600, config.getTimeToLiveSeconds());
+
+        courseSpringDataRepository.findAll().forEach(course -> courseRepository.findById(course.getId()));
+
+        StatisticsGateway statistics = region.getStatistics();
+        log.info("course region -> {} entries on heap, {} on disk, {} bytes on heap",
+                statistics.getLocalHeapSize(), statistics.getLocalDiskSize(), statistics.getLocalHeapSizeInBytes());
+    }
+
     /**
      * @ DirtiesContext -> resets the system to previous original state
      */
@@ -67,6 +162,54 @@ class CourseRepositoryTests {
         assertNull(courseRepository.findById(id));
     }
 
+    @Test
+    @Transactional
+    void deleteAllByIds_softDeletes() {
+        Course loaded = courseRepository.findById(2);
+
+        int deleted = courseRepository.deleteAllByIds(List.of(2L, 3L));
+
+        assertEquals(2, deleted);
+        assertTrue(loaded.isDeleted());
+        // filtered by @Where(is_deleted=false) -> but the row is still there
+        assertNull(courseRepository.findById(2));
+        assertNotNull(em.createNativeQuery("select * from course where id=3", Course.class).getSingleResult());
+    }
+
+    /**
+     * A reader between the eviction and the commit still sees the old row, and caches it again
+     * -> evicted once more after the commit, see EntityCaches
+     */
+    @Test
+    void deleteAllByIds_concurrentReaderBeforeCommit_notCachedAfterwards() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Long id = transaction.execute(status -> courseRepository.save(new Course("Evicted twice " + System.nanoTime())).getId());
+
+        try {
+            transaction.executeWithoutResult(status -> {
+                courseRepository.deleteAllByIds(List.of(id));
+
+                // another thread, another EntityManager -> the committed (not deleted) row goes back into the cache
+                CompletableFuture.runAsync(() -> {
+                    EntityManager other = entityManagerFactory.createEntityManager();
+                    try {
+                        assertNotNull(other.find(Course.class, id));
+                    } finally {
+                        other.close();
+                    }
+                }).join();
+                assertTrue(entityManagerFactory.getCache().contains(Course.class, id));
+            });
+
+            assertFalse(entityManagerFactory.getCache().contains(Course.class, id));
+        } finally {
+            transaction.executeWithoutResult(status -> em.createNativeQuery("delete from course where id=:id")
+                    .setParameter("id", id)
+                    .executeUpdate());
+            entityManagerFactory.getCache().evict(Course.class, id);
+        }
+    }
+
     @Test
     @DirtiesContext
     void findById_nativeQuery() {
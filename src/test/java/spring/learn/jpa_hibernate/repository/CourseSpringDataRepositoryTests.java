@@ -1,21 +1,45 @@
 package spring.learn.jpa_hibernate.repository;
 
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import spring.learn.jpa_hibernate.JpaHibernateApplication;
 import spring.learn.jpa_hibernate.entity.basics.Course;
+import spring.learn.jpa_hibernate.projection.CourseSummary;
+import spring.learn.jpa_hibernate.repository.paging.KeysetPage;
 import spring.learn.jpa_hibernate.repository.speing_data.CourseSpringDataRepository;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Slf4j
 @ExtendWith(SpringExtension.class)
@@ -25,6 +49,15 @@ class CourseSpringDataRepositoryTests {
     @Autowired
     CourseSpringDataRepository springDataRepository;
 
+    @PersistenceContext
+    EntityManager em;
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
     @Test
     public void findById() {
         long id = 1L;
@@ -71,6 +104,195 @@ class CourseSpringDataRepositoryTests {
         Page<Course> secondPage = springDataRepository.findAll(secondPageable);
     }
 
+    /**
+     * Same as {@link #pagination()} but seeks by the last seen id instead of skipping rows with an offset
+     */
+    @Test
+    public void keysetPagination() {
+
+        List<Course> walked = new ArrayList<>();
+
+        KeysetPage<Course> page = springDataRepository.findPage(null, 2);
+        walked.addAll(page.content());
+
+        while (page.hasNext()) {
+            page = springDataRepository.findPage(page.nextCursor(), 2);
+            walked.addAll(page.content());
+        }
+
+        // same rows, same order as a plain sorted findAll -> which also skips soft deleted rows
+        List<Course> all = springDataRepository.findAll(Sort.by("id"));
+        assertEquals(all.stream().map(Course::getId).toList(), walked.stream().map(Course::getId).toList());
+    }
+
+    @Test
+    public void keysetPagination_rejectsEmptyPage() {
+        // IllegalArgumentException -> translated by the repository proxy, like every exception leaving a repository
+        assertThrows(InvalidDataAccessApiUsageException.class, () -> springDataRepository.findPage(null, 0));
+        assertThrows(InvalidDataAccessApiUsageException.class, () -> springDataRepository.findPage(null, -1));
+    }
+
+    @Test
+    @Transactional
+    public void softDeleteAllByName() {
+        String name = "Comp. Sci.";
+        int matching = springDataRepository.findByName(name).size();
+
+        int deleted = springDataRepository.softDeleteAllByName(name);
+
+        assertEquals(matching, deleted);
+        assertTrue(springDataRepository.findByName(name).isEmpty());
+    }
+
+    /**
+     * same race as CourseRepositoryTests#deleteAllByIds_concurrentReaderBeforeCommit_notCachedAfterwards
+     */
+    @Test
+    public void softDeleteAllByName_concurrentReaderBeforeCommit_notCachedAfterwards() {
+        String name = "Evicted twice " + System.nanoTime();
+        Long id = springDataRepository.save(new Course(name)).getId();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        try {
+            transaction.executeWithoutResult(status -> {
+                springDataRepository.softDeleteAllByName(name);
+
+                // another thread, another EntityManager -> the committed (live) row goes back into the cache
+                CompletableFuture.runAsync(() -> {
+                    EntityManager other = entityManagerFactory.createEntityManager();
+                    try {
+                        assertNotNull(other.find(Course.class, id));
+                    } finally {
+                        other.close();
+                    }
+                }).join();
+            });
+
+            assertFalse(entityManagerFactory.getCache().contains(Course.class, id));
+        } finally {
+            transaction.executeWithoutResult(status -> em.createNativeQuery("delete from course where id=:id")
+                    .setParameter("id", id)
+                    .executeUpdate());
+            entityManagerFactory.getCache().evict(Course.class, id);
+        }
+    }
+
+    @Test
+    public void nameSearch_sameAsLike() {
+        List<Long> suffix = springDataRepository.findByNameSuffix("ci.").stream().map(Course::getId).sorted().toList();
+        List<Long> substring = springDataRepository.findByNameSubstring("Sci").stream().map(Course::getId).sorted().toList();
+
+        List<Long> expected = springDataRepository.findAll().stream()
+                .filter(course -> course.getName().contains("Sci."))
+                .map(Course::getId).sorted().toList();
+
+        assertEquals(expected, suffix);
+        assertEquals(expected, substring);
+    }
+
+    /**
+     * every 2 character token of these terms is in InnoDB's default stopword list
+     */
+    @Test
+    public void nameSearch_stopwordTerms_sameAsLike() {
+        for (String term : List.of("is", "to", "or", "isto")) {
+            List<Long> substring = springDataRepository.findByNameSubstring(term).stream().map(Course::getId).sorted().toList();
+            List<Long> like = springDataRepository.findByNameLike("%" + term + "%").stream().map(Course::getId).sorted().toList();
+
+            assertEquals(like, substring, term);
+        }
+        // `History` from course.sql
+        assertFalse(springDataRepository.findByNameSubstring("is").isEmpty());
+    }
+
+    /**
+     * `explain` shows whether MySQL seeks on an index (type = range / fulltext) or scans the table (type = ALL)
+     */
+    @Test
+    @Transactional
+    // rolled back at the end
+    public void nameSearch_seesOwnUncommittedRows() {
+        String name = "Uncommitted Qzx " + System.nanoTime();
+        springDataRepository.save(new Course(name));
+        em.flush();
+
+        // not in the fulltext index before the commit -> must fall back to `like`
+        assertEquals(List.of(name), springDataRepository.findByNameSubstring("Qzx").stream().map(Course::getName).toList());
+    }
+
+    @Test
+    public void nameSearch_quoteInTerm_sameAsLike() {
+        // `"` cannot be searched through the index -> stripping it would find `Comp. Sci.`
+        List<Course> found = springDataRepository.findByNameSubstring("\"Sci\"");
+
+        assertEquals(springDataRepository.findByNameLike("%\"Sci\"%").stream().map(Course::getId).toList(),
+                found.stream().map(Course::getId).toList());
+        assertTrue(found.isEmpty());
+    }
+
+    @Test
+    public void nameSearch_usesIndex() {
+        Object[] suffixPlan = explain("select * from course where is_deleted=false and name_reversed like 'noM%'");
+        Object[] substringPlan = explain("select * from course where is_deleted=false and match(name) against ('\"om\"' in boolean mode) and name like '%om%'");
+        Object[] likePlan = explain("select * from course where name like '%Mon'");
+
+        log.info("name_reversed like 'noM%' -> {}", Arrays.toString(suffixPlan));
+        log.info("match(name) against 'om'  -> {}", Arrays.toString(substringPlan));
+        log.info("name like '%Mon'          -> {}", Arrays.toString(likePlan));
+
+        // columns of `explain` -> id, select_type, table, partitions, type, possible_keys, key, ...
+        assertEquals("idx_course_name_reversed", suffixPlan[6]);
+        assertEquals("ft_course_name", substringPlan[6]);
+        // leading `%` -> no index at all
+        assertNull(likePlan[6]);
+    }
+
+    private Object[] explain(String sql) {
+        return (Object[]) em.createNativeQuery("explain " + sql).getSingleResult();
+    }
+
+    @Test
+    @Transactional(readOnly = true)
+    public void streamAll_detachesProcessedCourses() {
+        long total = springDataRepository.count();
+        Session session = em.unwrap(Session.class);
+
+        long walked = 0;
+        try (Stream<Course> courses = springDataRepository.streamAll(2, 2)) {
+            for (Course course : (Iterable<Course>) courses::iterator) {
+                walked++;
+                // never more than `detachEvery` courses are managed at once
+                assertTrue(session.getStatistics().getEntityCount() <= 2);
+            }
+        }
+
+        assertEquals(total, walked);
+    }
+
+    /**
+     * Same rows, but the projection loads no entities -> nothing to manage, snapshot and dirty check
+     * <p>
+     * the `OrderByIdDesc` variants are not query cached -> both really go to the database
+     */
+    @Test
+    public void projection_vs_entity() {
+        String name = "Comp. Sci.";
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getStatistics();
+
+        long loads = statistics.getEntityLoadCount();
+        List<Course> courses = springDataRepository.findByNameOrderByIdDesc(name);
+        assertEquals(courses.size(), statistics.getEntityLoadCount() - loads);
+
+        loads = statistics.getEntityLoadCount();
+        List<CourseSummary> summaries = springDataRepository.findSummariesByNameOrderByIdDesc(name);
+        assertEquals(0, statistics.getEntityLoadCount() - loads);
+
+        assertEquals(
+                courses.stream().map(course -> new CourseSummary(course.getId(), course.getName(), course.getRating())).toList(),
+                summaries
+        );
+    }
+
     /*
 
         Standard CRUD methods in both `JpaRepository` and `CrudRepository`
@@ -0,0 +1,135 @@
+package spring.learn.jpa_hibernate.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.entity.relationship.Passport;
+import spring.learn.jpa_hibernate.entity.relationship.Student;
+import spring.learn.jpa_hibernate.entity.relationship.Subject;
+import spring.learn.jpa_hibernate.projection.SubjectSummary;
+import spring.learn.jpa_hibernate.repository.existence.ExistenceIndex;
+import spring.learn.jpa_hibernate.repository.relationship.StudentRepository;
+import spring.learn.jpa_hibernate.repository.relationship.SubjectRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import javax.transaction.Transactional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@ExtendWith(SpringExtension.class)
+// off by default -> see ExistenceIndex
+@SpringBootTest(classes = JpaHibernateApplication.class, properties = "existence-index.enabled=true")
+class ExistenceIndexTests {
+
+    @Autowired
+    ExistenceIndex existenceIndex;
+
+    @Autowired
+    SubjectRepository subjectRepository;
+
+    @Autowired
+    StudentRepository studentRepository;
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Test
+    void existingRows_neverDefiniteMiss() {
+        for (SubjectSummary subject : subjectRepository.findAllSummaries()) {
+            assertTrue(existenceIndex.mightContain(ExistenceIndex.Key.SUBJECT_ID, subject.id()));
+            assertTrue(existenceIndex.mightContain(ExistenceIndex.Key.SUBJECT_NAME, subject.name()));
+            // same key to MySQL's case insensitive collation
+            assertTrue(existenceIndex.mightContain(ExistenceIndex.Key.SUBJECT_NAME, subject.name().toLowerCase()));
+        }
+        assertTrue(existenceIndex.mightContain(ExistenceIndex.Key.STUDENT_ID, 20_002));
+        assertTrue(existenceIndex.mightContain(ExistenceIndex.Key.PASSPORT_NUMBER, "J54321"));
+    }
+
+    @Test
+    void unknownIds_noRoundTrip() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getStatistics();
+        long before = statistics.getPrepareStatementCount();
+
+        // ~1% false positives -> those few still go to the database
+        long found = IntStream.range(900_000, 900_100)
+                .mapToObj(id -> subjectRepository.findById(id))
+                .filter(subject -> subject != null)
+                .count();
+
+        long statements = statistics.getPrepareStatementCount() - before;
+        log.info("100 unknown ids -> {} statements, {}", statements, existenceIndex.stats());
+
+        assertEquals(0, found);
+        assertTrue(statements < 10);
+    }
+
+    @Test
+    void duplicateUniqueKeys_failBeforeInsert() {
+        assertThrows(
+                DataIntegrityViolationException.class,
+                () -> studentRepository.saveWithPassport(new Student("Copy"), new Passport("J54321"))
+        );
+        assertThrows(
+                DataIntegrityViolationException.class,
+                () -> subjectRepository.save(new Subject("History"))
+        );
+    }
+
+    @Test
+    @Transactional
+    // rolled back at the end
+    void newSubject_foundRightAway() {
+        Subject subject = subjectRepository.save(new Subject("Existence Index " + System.nanoTime()));
+
+        // not flushed yet -> added to the index on persist
+        assertNotNull(subjectRepository.findById(subject.getId()));
+        assertNotNull(subjectRepository.findSubjectByName(subject.getName()));
+    }
+
+    @Test
+    @Transactional
+    // rolled back at the end
+    void textKeyMiss_stillFound() {
+        long suffix = System.nanoTime();
+        subjectRepository.save(new Subject("Bj\u00f8rn " + suffix));
+        entityManager.flush();
+
+        // `ø` and `o` are the same to utf8mb4_0900_ai_ci, but not to ExistenceIndex#normalize
+        // -> text keys must not short-circuit the lookup
+        assertNotNull(subjectRepository.findSubjectByName("Bjorn " + suffix));
+        assertTrue(subjectRepository.existsByName("Bjorn " + suffix));
+    }
+
+    @Test
+    @Transactional
+    // rolled back at the end
+    void manyRows_oneSynchronizationPerTransaction() {
+        int before = TransactionSynchronizationManager.getSynchronizations().size();
+
+        long suffix = System.nanoTime();
+        for (int i = 0; i < 10; i++) subjectRepository.save(new Subject("Existence Index " + suffix + " " + i));
+        // POST_INSERT puts the same keys again
+        entityManager.flush();
+
+        assertEquals(before + 1, TransactionSynchronizationManager.getSynchronizations().size());
+    }
+}
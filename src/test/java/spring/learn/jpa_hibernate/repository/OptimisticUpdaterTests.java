@@ -0,0 +1,58 @@
+package spring.learn.jpa_hibernate.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+import spring.learn.jpa_hibernate.repository.basics.CourseJpaRepository;
+import spring.learn.jpa_hibernate.repository.locking.OptimisticUpdater;
+import spring.learn.jpa_hibernate.repository.locking.RetryExecutor;
+import spring.learn.jpa_hibernate.repository.locking.RetryStats;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = JpaHibernateApplication.class)
+class OptimisticUpdaterTests {
+
+    @Autowired
+    OptimisticUpdater updater;
+
+    @Autowired
+    RetryExecutor retryExecutor;
+
+    @Autowired
+    CourseJpaRepository courseRepository;
+
+    @Test
+    void conflictingWriter_isRetried() {
+        Course course = courseRepository.save(new Course("Optimistic"));
+        long conflictsBefore = retryExecutor.getStats().conflicts();
+
+        AtomicInteger attempts = new AtomicInteger();
+        updater.update(Course.class, course.getId(), (Course loaded) -> {
+
+            // first attempt only -> another writer sneaks in (and commits) after this one has loaded the course
+            if (attempts.incrementAndGet() == 1) {
+                updater.update(Course.class, course.getId(), (Course other) -> other.setName("Other writer"));
+            }
+            loaded.setName(loaded.getName() + " + Me");
+        });
+
+        RetryStats stats = retryExecutor.getStats();
+        log.info("retry stats = {}, conflict rate = {}", stats, stats.conflictRate());
+
+        assertEquals(2, attempts.get());
+        assertTrue(stats.conflicts() > conflictsBefore);
+        // the retry ran on fresh data -> the other writer's change is not lost
+        assertEquals("Other writer + Me", courseRepository.findById(course.getId()).getName());
+    }
+}
@@ -0,0 +1,218 @@
+package spring.learn.jpa_hibernate.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.bean.PersonBean;
+import spring.learn.jpa_hibernate.repository.basics.IndexedRowMapper;
+import spring.learn.jpa_hibernate.repository.basics.PersonJdbcDao;
+import spring.learn.jpa_hibernate.repository.cache.NearCacheStats;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = JpaHibernateApplication.class)
+// @Transactional -> JdbcTemplate joins the test transaction, so every inserted row is rolled back at the end
+@Transactional
+class PersonJdbcDaoTests {
+
+    private static final int ROWS = 2_000;
+
+    @Autowired
+    PersonJdbcDao personJdbcDao;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void insertAll_writesBackIds() {
+        List<PersonBean> persons = newPersons(10);
+
+        personJdbcDao.insertAll(persons, 3);
+
+        persons.forEach(person -> assertNotEquals(0, person.getId()));
+        log.info("inserted persons = {}", persons);
+    }
+
+    /**
+     * 1 round trip per row vs 1 round trip per chunk -> counted by MySQL itself: `Com_insert` goes up by 1 per statement.
+     * With `rewriteBatchedStatements=true` a chunk is sent as 1 multi-row insert.
+     * <p>
+     * The session counter works because the test transaction keeps every call on the same connection
+     */
+    @Test
+    void insertAll_oneStatementPerChunk() {
+        List<PersonBean> perRow = newPersons(7);
+        long before = insertStatements();
+        perRow.forEach(personJdbcDao::insert);
+        assertEquals(7, insertStatements() - before);
+
+        List<PersonBean> batched = newPersons(7);
+        before = insertStatements();
+        personJdbcDao.insertAll(batched, 3);
+        // 3 + 3 + 1
+        assertEquals(3, insertStatements() - before);
+
+        // same rows either way
+        List<PersonBean> found = personJdbcDao.findByIds(batched.stream().map(PersonBean::getId).toList());
+        assertEquals(
+                batched.stream().map(PersonBean::getName).toList(),
+                found.stream().map(PersonBean::getName).toList()
+        );
+    }
+
+    /**
+     * a whole chunk in 1 rewritten statement -> every value of every row must arrive
+     */
+    @Test
+    void insertAll_multiRowChunk() {
+        List<PersonBean> persons = newPersons(5);
+        for (int i = 0; i < persons.size(); i++) persons.get(i).setLocation("Location " + i);
+
+        long before = insertStatements();
+        personJdbcDao.insertAll(persons, 5);
+        assertEquals(1, insertStatements() - before);
+
+        List<PersonBean> found = personJdbcDao.findByIds(persons.stream().map(PersonBean::getId).toList());
+        assertEquals(
+                persons.stream().map(person -> person.getName() + "@" + person.getLocation()).toList(),
+                found.stream().map(person -> person.getName() + "@" + person.getLocation()).toList()
+        );
+    }
+
+    @Test
+    void streamAll_sameRowsAsFindAll() {
+        personJdbcDao.insertAll(newPersons(ROWS));
+
+        long streamed;
+        try (Stream<PersonBean> persons = personJdbcDao.streamAll(100)) {
+            streamed = persons.count();
+        }
+
+        AtomicInteger visited = new AtomicInteger();
+        personJdbcDao.forEach(person -> visited.incrementAndGet());
+
+        assertEquals(personJdbcDao.findAll().size(), streamed);
+        assertEquals(streamed, visited.get());
+    }
+
+    @Test
+    void findByIds_sameAsFindById() {
+        List<PersonBean> persons = newPersons(5);
+        personJdbcDao.insertAll(persons);
+
+        List<Integer> ids = persons.stream().map(PersonBean::getId).toList();
+        List<PersonBean> found = personJdbcDao.findByIds(ids);
+
+        assertEquals(ids, found.stream().map(PersonBean::getId).toList());
+        assertEquals(personJdbcDao.findById(ids.get(0)).toString(), found.get(0).toString());
+    }
+
+    @Test
+    // no transaction -> the cache is only used outside of one. Auto-commit, the row is deleted at the end
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void findById_cachedUntilWritten() {
+        PersonBean person = newPersons(1).get(0);
+        personJdbcDao.insertAll(List.of(person));
+        int id = person.getId();
+
+        personJdbcDao.findById(id);
+        long hits = personJdbcDao.getCacheStats().hits();
+        personJdbcDao.findById(id);
+        assertEquals(hits + 1, personJdbcDao.getCacheStats().hits());
+
+        // a copy is returned -> changing it does not change the cached person
+        personJdbcDao.findById(id).setName("Not saved");
+        assertEquals(person.getName(), personJdbcDao.findById(id).getName());
+
+        person.setName("Renamed");
+        personJdbcDao.update(person);
+        assertEquals("Renamed", personJdbcDao.findById(id).getName());
+
+        personJdbcDao.deleteById(id);
+        assertThrows(EmptyResultDataAccessException.class, () -> personJdbcDao.findById(id));
+
+        NearCacheStats stats = personJdbcDao.getCacheStats();
+        log.info("findById cache -> {}, hit ratio = {}", stats, stats.hitRatio());
+    }
+
+    @Test
+    void findById_nullBirthDate() {
+        jdbcTemplate.update("insert into person(name, location, birth_date) values ('No birthday', 'Colombo', null)");
+        // same connection -> the test transaction
+        int id = jdbcTemplate.queryForObject("select last_insert_id()", Integer.class);
+
+        PersonBean person = personJdbcDao.findById(id);
+        assertEquals("No birthday", person.getName());
+        assertNull(person.getBirthDate());
+    }
+
+    @Test
+    void findById_insideTransaction_notCached() {
+        PersonBean person = newPersons(1).get(0);
+        personJdbcDao.insert(person);
+        int id = jdbcTemplate.queryForObject("select last_insert_id()", Integer.class);
+
+        NearCacheStats before = personJdbcDao.getCacheStats();
+        assertEquals(person.getName(), personJdbcDao.findById(id).getName());
+        assertEquals(person.getName(), personJdbcDao.findById(id).getName());
+        NearCacheStats after = personJdbcDao.getCacheStats();
+
+        // uncommitted row -> rolled back at the end, must not be left in the cache
+        assertEquals(before.hits(), after.hits());
+        assertEquals(before.misses(), after.misses());
+    }
+
+    @Test
+    void manyWrites_oneSynchronizationPerTransaction() {
+        int before = TransactionSynchronizationManager.getSynchronizations().size();
+
+        for (PersonBean person : newPersons(5)) personJdbcDao.insert(person);
+        personJdbcDao.insertAll(newPersons(5), 2);
+
+        assertEquals(before + 1, TransactionSynchronizationManager.getSynchronizations().size());
+    }
+
+    /**
+     * IndexedRowMapper must map exactly what BeanPropertyRowMapper maps, column by column
+     */
+    @Test
+    void indexedRowMapper_sameAsBeanPropertyRowMapper() {
+        personJdbcDao.insertAll(newPersons(20));
+        String sql = "select id, name, location, birth_date from person";
+
+        List<PersonBean> expected = jdbcTemplate.query(sql, new BeanPropertyRowMapper<>(PersonBean.class));
+        List<PersonBean> actual = jdbcTemplate.query(sql, IndexedRowMapper.of(PersonBean.class, "id", "name", "location", "birth_date"));
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    private long insertStatements() {
+        return jdbcTemplate.queryForObject("show session status like 'Com_insert'", (rs, rowNum) -> rs.getLong(2));
+    }
+
+    private List<PersonBean> newPersons(int count) {
+        List<PersonBean> persons = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) persons.add(new PersonBean("Person " + i, "Colombo", new Date()));
+        return persons;
+    }
+}
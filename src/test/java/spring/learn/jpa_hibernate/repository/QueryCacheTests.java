@@ -0,0 +1,145 @@
+package spring.learn.jpa_hibernate.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.bean.PersonBean;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+import spring.learn.jpa_hibernate.entity.basics.Person;
+import spring.learn.jpa_hibernate.repository.basics.PersonJdbcDao;
+import spring.learn.jpa_hibernate.repository.basics.PersonJpaRepository;
+import spring.learn.jpa_hibernate.repository.cache.QueryCacheStats;
+import spring.learn.jpa_hibernate.repository.cache.QueryCaches;
+import spring.learn.jpa_hibernate.repository.relationship.SubjectRepository;
+import spring.learn.jpa_hibernate.repository.speing_data.CourseSpringDataRepository;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = JpaHibernateApplication.class)
+class QueryCacheTests {
+
+    @Autowired
+    PersonJpaRepository personJpaRepository;
+
+    @Autowired
+    PersonJdbcDao personJdbcDao;
+
+    @Autowired
+    SubjectRepository subjectRepository;
+
+    @Autowired
+    CourseSpringDataRepository courseSpringDataRepository;
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Test
+    void namedQuery_secondCallIsAHit() {
+        personJpaRepository.findAll();
+        QueryCacheStats before = QueryCaches.statistics(entityManagerFactory, "find_all");
+
+        personJpaRepository.findAll();
+        QueryCacheStats after = QueryCaches.statistics(entityManagerFactory, "find_all");
+
+        assertEquals(before.hits() + 1, after.hits());
+        log.info("find_all -> {}", after);
+    }
+
+    @Test
+    void namedQuery_scalarResults() {
+        subjectRepository.findAllSummaries();
+        subjectRepository.findAllSummaries();
+
+        QueryCacheStats stats = QueryCaches.statistics(entityManagerFactory, "Subject.getAllSubjects.summary");
+        assertTrue(stats.hits() > 0);
+        log.info("Subject.getAllSubjects.summary -> {}", stats);
+    }
+
+    @Test
+    void namedQuery_courseFindById() {
+        for (int i = 0; i < 3; i++) {
+            em.createNamedQuery("Course.findById", Course.class).setParameter("id", 1L).getResultList();
+        }
+
+        QueryCacheStats stats = QueryCaches.statistics(entityManagerFactory, "Course.findById");
+        assertTrue(stats.hits() >= 2);
+        log.info("Course.findById -> {}", stats);
+    }
+
+    @Test
+    void derivedFinder_secondCallIsAHit() {
+        String name = "Comp. Sci.";
+        courseSpringDataRepository.findByName(name);
+        long hits = QueryCaches.statistics(entityManagerFactory).hits();
+
+        courseSpringDataRepository.findByName(name);
+
+        assertEquals(hits + 1, QueryCaches.statistics(entityManagerFactory).hits());
+    }
+
+    /**
+     * a write through JdbcTemplate bypasses Hibernate -> PersonJdbcDao has to throw away the cached results itself
+     */
+    @Test
+    void jdbcInsert_invalidatesFindAll() {
+        List<Person> before = personJpaRepository.findAll();
+
+        PersonBean person = new PersonBean("Cached", "Colombo", new Date());
+        personJdbcDao.insertAll(List.of(person));
+
+        try {
+            List<Person> after = personJpaRepository.findAll();
+            assertEquals(before.size() + 1, after.size());
+        } finally {
+            personJdbcDao.deleteById(person.getId());
+        }
+
+        assertEquals(before.size(), personJpaRepository.findAll().size());
+        log.info("query cache -> {}", QueryCaches.statistics(entityManagerFactory));
+    }
+
+    /**
+     * only the deleted persons leave the Person region -> the rest stays cached
+     */
+    @Test
+    void deleteAllByIds_keepsOtherPersonsCached() {
+        PersonBean deleted = new PersonBean("Deleted", "Colombo", new Date());
+        PersonBean kept = new PersonBean("Kept", "Colombo", new Date());
+        personJdbcDao.insertAll(List.of(deleted, kept));
+
+        try {
+            // loaded -> put into the Person region
+            personJpaRepository.findById(deleted.getId());
+            personJpaRepository.findById(kept.getId());
+            Cache cache = entityManagerFactory.getCache();
+            assertTrue(cache.contains(Person.class, kept.getId()));
+
+            assertEquals(1, personJpaRepository.deleteAllByIds(List.of(deleted.getId())));
+
+            assertFalse(cache.contains(Person.class, deleted.getId()));
+            assertTrue(cache.contains(Person.class, kept.getId()));
+            assertTrue(personJpaRepository.findAll().stream().noneMatch(person -> person.getId() == deleted.getId()));
+        } finally {
+            personJdbcDao.deleteById(kept.getId());
+        }
+    }
+}
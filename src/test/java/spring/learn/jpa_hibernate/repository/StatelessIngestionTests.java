@@ -0,0 +1,71 @@
+package spring.learn.jpa_hibernate.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.entity.basics.Course;
+import spring.learn.jpa_hibernate.repository.basics.CourseJpaRepository;
+import spring.learn.jpa_hibernate.repository.ingestion.IngestionStats;
+import spring.learn.jpa_hibernate.repository.ingestion.StatelessIngestion;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = JpaHibernateApplication.class)
+class StatelessIngestionTests {
+
+    @Autowired
+    StatelessIngestion ingestion;
+
+    @Autowired
+    CourseJpaRepository courseRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    // unique per run -> only the rows of this run are deleted again
+    private final String prefix = "Ingested " + System.currentTimeMillis() + " ";
+
+    /**
+     * StatelessIngestion commits on its own -> a test transaction cannot roll it back, so the rows are deleted here.
+     * Plain jdbc bypasses Hibernate -> cached courses and cached queries over `course` are evicted as well
+     */
+    @AfterEach
+    void deleteIngested() {
+        int deleted = jdbcTemplate.update("delete from course where name like ?", prefix + "%");
+        entityManagerFactory.getCache().evict(Course.class);
+        entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictQueryRegions();
+        log.info("deleted {} ingested courses", deleted);
+    }
+
+    @Test
+    void ingestCourses() {
+        List<Course> courses = IntStream.range(0, 500).mapToObj(i -> new Course(prefix + i)).toList();
+
+        IngestionStats stats = ingestion.ingestCourses(courses.stream());
+        log.info("{}", stats);
+
+        assertEquals(500, stats.rows());
+
+        // ids are written back by the stateless session, timestamps are set by StatelessIngestion
+        Course first = courseRepository.findById(courses.get(0).getId());
+        assertNotNull(first.getCreatedOn());
+        assertNotNull(first.getLastUpdated());
+    }
+}
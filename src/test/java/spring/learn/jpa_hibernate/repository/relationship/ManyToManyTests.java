@@ -7,6 +7,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import spring.learn.jpa_hibernate.JpaHibernateApplication;
 import spring.learn.jpa_hibernate.entity.relationship.Review;
 import spring.learn.jpa_hibernate.entity.relationship.Student;
@@ -18,6 +20,10 @@ import javax.transaction.Transactional;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 @Slf4j
 @ExtendWith(SpringExtension.class)
 @SpringBootTest(classes = JpaHibernateApplication.class)
@@ -29,6 +35,9 @@ public class ManyToManyTests {
     @Autowired
     SubjectRepository subjectRepository;
 
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
     @PersistenceContext
     EntityManager em;
 
@@ -122,4 +131,34 @@ public class ManyToManyTests {
         List<Review> reviews = subject.getReviews();
         log.info("Reviews = {}", reviews);
     }
+
+    /**
+     * Subject#reviews is in the collection cache -> adding or removing a review must evict it
+     */
+    @Test
+    public void collectionCache_evictedWhenReviewsChange() {
+
+        int subjectId = 10_002;
+        String region = Subject.class.getName() + ".reviews";
+        org.hibernate.Cache cache = em.getEntityManagerFactory().getCache().unwrap(org.hibernate.Cache.class);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        int before = countReviews(transaction, subjectId);
+        assertTrue(cache.containsCollection(region, subjectId));
+
+        // 1. list is changed through the repository -> evicted on commit
+        Review review = new Review(4, "Cached");
+        subjectRepository.addReviewsToSubject(subjectId, List.of(review));
+        assertFalse(cache.containsCollection(region, subjectId));
+        assertEquals(before + 1, countReviews(transaction, subjectId));
+
+        // 2. only the owning side changes, the list is not touched -> evicted by auto_evict_collection_cache
+        transaction.executeWithoutResult(status -> em.remove(em.find(Review.class, review.getId())));
+        assertFalse(cache.containsCollection(region, subjectId));
+        assertEquals(before, countReviews(transaction, subjectId));
+    }
+
+    private int countReviews(TransactionTemplate transaction, int subjectId) {
+        return transaction.execute(status -> em.find(Subject.class, subjectId).getReviews().size());
+    }
 }
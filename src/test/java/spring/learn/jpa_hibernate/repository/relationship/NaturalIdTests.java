@@ -0,0 +1,75 @@
+package spring.learn.jpa_hibernate.repository.relationship;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.entity.relationship.Student;
+import spring.learn.jpa_hibernate.entity.relationship.Subject;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = JpaHibernateApplication.class)
+public class NaturalIdTests {
+
+    @Autowired
+    SubjectRepository subjectRepository;
+
+    @Autowired
+    StudentRepository studentRepository;
+
+    @PersistenceUnit
+    EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void findSubjectByName_secondCallFromMemory() {
+        Subject subject = subjectRepository.findSubjectByName("History");
+        assertEquals(10_002, subject.getId());
+
+        long statements = countStatements(() -> subjectRepository.findSubjectByName("History"));
+        assertEquals(0, statements);
+    }
+
+    @Test
+    public void findStudentByPassportNumber_secondCallFromMemory() {
+        Student student = studentRepository.findStudentByPassportNumber("J54321");
+        assertEquals(20_002, student.getId());
+
+        long statements = countStatements(() -> studentRepository.findStudentByPassportNumber("J54321"));
+        assertEquals(0, statements);
+        log.info("student = {}", student);
+    }
+
+    @Test
+    public void unknownNaturalId_isNull() {
+        assertNull(subjectRepository.findSubjectByName("Alchemy"));
+        assertNull(studentRepository.findStudentByPassportNumber("X00000"));
+    }
+
+    /**
+     * how many jdbc statements the lookup sent -> 0 means it was resolved from the caches
+     */
+    private long countStatements(Supplier<?> lookup) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getStatistics();
+        long before = statistics.getPrepareStatementCount();
+
+        lookup.get();
+
+        long statements = statistics.getPrepareStatementCount() - before;
+        log.info("natural id hits = {}, misses = {}, statements = {}",
+                statistics.getNaturalIdCacheHitCount(), statistics.getNaturalIdCacheMissCount(), statements);
+        return statements;
+    }
+}
@@ -7,15 +7,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import spring.learn.jpa_hibernate.JpaHibernateApplication;
+import spring.learn.jpa_hibernate.entity.relationship.Passport;
 import spring.learn.jpa_hibernate.entity.relationship.Review;
 import spring.learn.jpa_hibernate.entity.relationship.Subject;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.transaction.Transactional;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 @Slf4j
 @ExtendWith(SpringExtension.class)
 @SpringBootTest(classes = JpaHibernateApplication.class)
@@ -79,4 +84,41 @@ public class OneToManyTests {
         List<Review> reviews = subject.getReviews();
         log.info("Reviews = {}", reviews);
     }
+
+    /**
+     * Insert statements MySQL received (`Com_insert` of this session -> the test transaction keeps 1 connection) for
+     * <p> 1. Review -> pooled ids, inserts are sent in jdbc batches of `hibernate.jdbc_batch_size` (10)
+     * <p> 2. Passport -> still `GenerationType.IDENTITY`, every insert is run on its own
+     */
+    @Test
+    @Transactional
+    public void pooledIds_vs_identity() {
+
+        int rows = 100;
+
+        List<Review> reviews = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) reviews.add(new Review(4, "review " + i));
+
+        long before = insertStatements();
+        subjectRepository.addReviewsToSubject(10_001, reviews);
+        em.flush();
+        long pooled = insertStatements() - before;
+
+        // passport number is unique -> prefix with something different for each run
+        String run = Long.toString(System.currentTimeMillis() % 100_000);
+
+        before = insertStatements();
+        for (int i = 0; i < rows; i++) em.persist(new Passport("P" + run + "-" + i));
+        em.flush();
+        long identity = insertStatements() - before;
+
+        log.info("insert statements for {} rows -> pooled ids = {}, identity = {}", rows, pooled, identity);
+        assertTrue(pooled <= rows / 10 + 1);
+        assertEquals(rows, identity);
+    }
+
+    private long insertStatements() {
+        Object[] status = (Object[]) em.createNativeQuery("show session status like 'Com_insert'").getSingleResult();
+        return Long.parseLong(status[1].toString());
+    }
 }